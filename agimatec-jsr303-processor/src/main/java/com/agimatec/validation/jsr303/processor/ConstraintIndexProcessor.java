@@ -0,0 +1,270 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303.processor;
+
+import com.agimatec.validation.jsr303.AgimatecValidatorConfiguration;
+import com.agimatec.validation.jsr303.AgimatecValidatorFactory;
+import com.agimatec.validation.jsr303.ConstraintMetaDataProvider;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import javax.validation.Constraint;
+import javax.validation.GroupSequence;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Description: annotation processor (JSR-269, requires javac 1.6 or later) for the
+ * constrained classes of a compilation. It writes
+ * <ul>
+ * <li>the index of the constrained classes, which can be used by
+ * {@link AgimatecValidatorFactory#prewarm(String)} to build their metadata in advance</li>
+ * <li>for each constrained class a {@link ConstraintMetaDataProvider} naming the fields
+ * and methods with constraints, registered in META-INF/services, so that
+ * {@link com.agimatec.validation.jsr303.Jsr303MetaBeanFactory} reads the annotations
+ * of these members only</li>
+ * </ul>
+ * The ConstraintValidations are still created at runtime from the annotations,
+ * no validators are generated.
+ * A class is constrained when the class, one of its fields or methods is annotated with a
+ * constraint (or a list of constraints), with &#064;Valid or with &#064;GroupSequence.
+ * Classes that only inherit constraints are not listed.<br/>
+ * javac runs the processor when this module is on the (processor) class path,
+ * it is registered in META-INF/services.
+ * The option <code>-Aagimatec.prewarmIndex=...</code> changes the resource name of the index.
+ * The index and the provider configuration file only contain the classes of the
+ * compilation, so incremental compilations write incomplete files.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ConstraintIndexProcessor.INDEX_OPTION)
+public class ConstraintIndexProcessor extends AbstractProcessor {
+    /**
+     * processor option for the resource name of the index, like
+     * {@link AgimatecValidatorConfiguration.Properties#PREWARM_INDEX}
+     * (processor options must not contain '-')
+     */
+    public static final String INDEX_OPTION = "agimatec.prewarmIndex";
+    /** the constrained members per binary name of the constrained classes */
+    private final Map<String, Members> classes = new TreeMap<String, Members>();
+    /** the class names of the generated providers */
+    private final Set<String> providerNames = new TreeSet<String>();
+
+    /** the constrained members of a class */
+    private static class Members {
+        final TypeElement type;
+        final Set<String> fields = new TreeSet<String>();
+        final Set<String> methods = new TreeSet<String>();
+        boolean generated;
+
+        Members(TypeElement type) {
+            this.type = type;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+                           RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            if (!isConstraining(annotation)) continue;
+            for (Element each : roundEnv.getElementsAnnotatedWith(annotation)) {
+                final TypeElement type = getDeclaringType(each);
+                if (type == null) continue;
+                final String className =
+                      processingEnv.getElementUtils().getBinaryName(type).toString();
+                Members members = classes.get(className);
+                if (members == null) {
+                    members = new Members(type);
+                    classes.put(className, members);
+                }
+                if (each.getEnclosingElement() == type) {
+                    if (each.getKind() == ElementKind.FIELD) {
+                        members.fields.add(each.getSimpleName().toString());
+                    } else if (each.getKind() == ElementKind.METHOD) {
+                        members.methods.add(each.getSimpleName().toString());
+                    }
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            if (!classes.isEmpty()) {
+                writeIndex();
+                writeProviderConfiguration();
+            }
+        } else { // sources must not be generated in the last round
+            for (Map.Entry<String, Members> each : classes.entrySet()) {
+                if (!each.getValue().generated) {
+                    each.getValue().generated = true;
+                    writeProvider(each.getKey(), each.getValue());
+                }
+            }
+        }
+        return false; // other processors may process the annotations, too
+    }
+
+    /** generate the ConstraintMetaDataProvider of the class */
+    private void writeProvider(String className, Members members) {
+        final String providerName = className + ConstraintMetaDataProvider.CLASS_NAME_SUFFIX;
+        final int dot = providerName.lastIndexOf('.');
+        try {
+            final JavaFileObject file = processingEnv.getFiler()
+                  .createSourceFile(providerName, members.type);
+            final Writer writer = file.openWriter();
+            try {
+                if (dot > 0) {
+                    writer.write("package " + providerName.substring(0, dot) + ";\n\n");
+                }
+                writer.write("/** constrained members of " + className + ", generated by " +
+                      getClass().getName() + " */\n");
+                writer.write("public final class " + providerName.substring(dot + 1) +
+                      "\n      implements " + ConstraintMetaDataProvider.class.getName() +
+                      " {\n");
+                writer.write("    public String getBeanClassName() {\n        return \"" +
+                      className + "\";\n    }\n\n");
+                writer.write("    public String[] getConstrainedFields() {\n" +
+                      "        return new String[]{" + toLiterals(members.fields) +
+                      "};\n    }\n\n");
+                writer.write("    public String[] getConstrainedMethods() {\n" +
+                      "        return new String[]{" + toLiterals(members.methods) +
+                      "};\n    }\n");
+                writer.write("}\n");
+            } finally {
+                writer.close();
+            }
+            providerNames.add(providerName);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                  "cannot write " + providerName + ": " + e, members.type);
+        }
+    }
+
+    /** @return the names as comma separated string literals (names need no escapes) */
+    private String toLiterals(Set<String> names) {
+        final StringBuilder literals = new StringBuilder();
+        for (String each : names) {
+            if (literals.length() > 0) literals.append(", ");
+            literals.append('"').append(each).append('"');
+        }
+        return literals.toString();
+    }
+
+    /** register the generated providers in META-INF/services */
+    private void writeProviderConfiguration() {
+        final String resource =
+              "META-INF/services/" + ConstraintMetaDataProvider.class.getName();
+        try {
+            final FileObject file = processingEnv.getFiler()
+                  .createResource(StandardLocation.CLASS_OUTPUT, "", resource);
+            final Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+            try {
+                writer.write("# generated by " + getClass().getName() + "\n");
+                for (String each : providerNames) {
+                    writer.write(each);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                  "cannot write " + resource + ": " + e);
+        }
+    }
+
+    private void writeIndex() {
+        String index = processingEnv.getOptions().get(INDEX_OPTION);
+        if (index == null) index = AgimatecValidatorFactory.DEFAULT_PREWARM_INDEX;
+        try {
+            final FileObject file = processingEnv.getFiler()
+                  .createResource(StandardLocation.CLASS_OUTPUT, "", index);
+            final Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+            try {
+                writer.write("# constrained classes, generated by " +
+                      getClass().getName() + "\n");
+                for (String each : classes.keySet()) {
+                    writer.write(each);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                  "cannot write " + index + ": " + e);
+        }
+    }
+
+    /** @return true for constraints, lists of constraints, @Valid and @GroupSequence */
+    private boolean isConstraining(TypeElement annotation) {
+        if (isConstraint(annotation)) return true;
+        final String name = annotation.getQualifiedName().toString();
+        if (name.equals(Valid.class.getName()) ||
+              name.equals(GroupSequence.class.getName())) return true;
+        for (ExecutableElement each :
+              ElementFilter.methodsIn(annotation.getEnclosedElements())) {
+            if (each.getSimpleName().contentEquals("value")) {
+                final TypeMirror type = each.getReturnType();
+                if (type.getKind() != TypeKind.ARRAY) return false;
+                final TypeMirror component = ((ArrayType) type).getComponentType();
+                return component.getKind() == TypeKind.DECLARED && isConstraint(
+                      (TypeElement) ((DeclaredType) component).asElement());
+            }
+        }
+        return false;
+    }
+
+    private boolean isConstraint(TypeElement annotation) {
+        return annotation.getKind() == ElementKind.ANNOTATION_TYPE &&
+              annotation.getAnnotation(Constraint.class) != null;
+    }
+
+    /** @return the class declaring the element, null for annotation types */
+    private TypeElement getDeclaringType(Element element) {
+        Element each = element;
+        while (each != null && !(each instanceof TypeElement)) {
+            each = each.getEnclosingElement();
+        }
+        if (each == null || each.getKind() == ElementKind.ANNOTATION_TYPE) return null;
+        return (TypeElement) each;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303.processor;
+
+import com.agimatec.validation.jsr303.AgimatecValidatorFactory;
+import com.agimatec.validation.jsr303.ConstraintMetaDataProvider;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import javax.validation.Constraint;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ConstraintIndexProcessor Tester.
+ *
+ * @author <Authors name>
+ * @version 1.0
+ * @since <pre>03/22/2010</pre>
+ */
+public class ConstraintIndexProcessorTest extends TestCase {
+    public ConstraintIndexProcessorTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(ConstraintIndexProcessorTest.class);
+    }
+
+    public void testIndex() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) return; // not running on a JDK
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+              "constraint-index-" + System.nanoTime());
+        File sources = new File(dir, "src/sample");
+        File classes = new File(dir, "classes");
+        assertTrue(sources.mkdirs() && classes.mkdirs());
+        write(new File(sources, "Order.java"), "package sample;\n" +
+              "public class Order {\n" +
+              "  @javax.validation.constraints.NotNull private String number;\n" +
+              "  @javax.validation.Valid private Line line;\n" +
+              "  public static class Line {\n" +
+              "    @javax.validation.constraints.Size.List({})\n" +
+              "    public String getText() { return null; }\n" +
+              "  }\n" +
+              "}\n");
+        write(new File(sources, "Plain.java"), "package sample;\n" +
+              "@Deprecated public class Plain { private String name; }\n");
+        String classPath = location(Constraint.class) + File.pathSeparator +
+              location(ConstraintMetaDataProvider.class) + File.pathSeparator +
+              location(ConstraintIndexProcessor.class);
+        int result = compiler.run(null, null, null, "-classpath", classPath,
+              "-processor", ConstraintIndexProcessor.class.getName(),
+              "-d", classes.getPath(),
+              new File(sources, "Order.java").getPath(),
+              new File(sources, "Plain.java").getPath());
+        assertEquals(0, result);
+
+        List<String> lines = read(new File(classes,
+              AgimatecValidatorFactory.DEFAULT_PREWARM_INDEX));
+        assertTrue(lines.remove(0).startsWith("#"));
+        assertEquals(Arrays.asList("sample.Order", "sample.Order$Line"), lines);
+
+        lines = read(new File(classes,
+              "META-INF/services/" + ConstraintMetaDataProvider.class.getName()));
+        assertTrue(lines.remove(0).startsWith("#"));
+        assertEquals(Arrays.asList("sample.Order$$ConstraintMetaData",
+              "sample.Order$Line$$ConstraintMetaData"), lines);
+        ClassLoader loader = new URLClassLoader(new URL[]{classes.toURI().toURL()},
+              getClass().getClassLoader());
+        ConstraintMetaDataProvider provider = (ConstraintMetaDataProvider) loader
+              .loadClass("sample.Order$Line$$ConstraintMetaData").newInstance();
+        assertEquals("sample.Order$Line", provider.getBeanClassName());
+        assertEquals(0, provider.getConstrainedFields().length);
+        assertEquals(Arrays.asList("getText"), Arrays.asList(provider.getConstrainedMethods()));
+        provider = (ConstraintMetaDataProvider) loader
+              .loadClass("sample.Order$$ConstraintMetaData").newInstance();
+        assertEquals(Arrays.asList("line", "number"),
+              Arrays.asList(provider.getConstrainedFields()));
+
+        // the metadata of the compiled classes is built with the providers
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        assertEquals(1, validator.validate(loader.loadClass("sample.Order").newInstance())
+              .size());
+    }
+
+    private String location(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI())
+              .getPath();
+    }
+
+    private void write(File file, String content) throws IOException {
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<String> read(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
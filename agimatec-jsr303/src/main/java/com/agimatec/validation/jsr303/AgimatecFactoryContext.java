@@ -35,21 +35,34 @@ import java.util.List;
  */
 public class AgimatecFactoryContext implements ValidatorContext {
     private final AgimatecValidatorFactory factory;
-    private final MetaBeanFinder metaBeanFinder;
+    /**
+     * the metadata used by validators of this context: either the one given
+     * in the constructor, or (lazy) the shared metadata of the factory, or a
+     * private one, when the ConstraintValidatorFactory has been overridden.
+     */
+    private MetaBeanFinder metaBeanFinder;
+    /** true when metaBeanFinder has not been given in the constructor */
+    private final boolean lazyMetaBeanFinder;
 
     private MessageInterpolator messageInterpolator;
     private TraversableResolver traversableResolver;
     private ConstraintValidatorFactory constraintValidatorFactory;
+    /**
+     * the results of immutable beans: either (lazy) the one of the factory, or a
+     * private one, when the configuration has been overridden.
+     */
+    private ResultCache resultCache;
 
     public AgimatecFactoryContext(AgimatecValidatorFactory factory) {
         this.factory = factory;
-        this.metaBeanFinder = buildMetaBeanManager();
+        this.lazyMetaBeanFinder = true;
     }
 
     protected AgimatecFactoryContext(AgimatecValidatorFactory factory,
                                      MetaBeanFinder metaBeanFinder) {
         this.factory = factory;
         this.metaBeanFinder = metaBeanFinder;
+        this.lazyMetaBeanFinder = false;
     }
 
     public AgimatecValidatorFactory getFactory() {
@@ -57,21 +70,36 @@ public class AgimatecFactoryContext implements ValidatorContext {
     }
 
     public final MetaBeanFinder getMetaBeanFinder() {
+        if (metaBeanFinder == null) {
+            if (constraintValidatorFactory == null) {
+                // same configuration as the factory: share the metadata
+                metaBeanFinder = factory.getMetaBeanManager();
+            } else {
+                // validator instances in the metadata depend on the ConstraintValidatorFactory
+                metaBeanFinder = buildMetaBeanManager();
+            }
+        }
         return metaBeanFinder;
     }
 
     public ValidatorContext messageInterpolator(MessageInterpolator messageInterpolator) {
         this.messageInterpolator = messageInterpolator;
+        this.resultCache = null;
         return this;
     }
 
     public ValidatorContext traversableResolver(TraversableResolver traversableResolver) {
         this.traversableResolver = traversableResolver;
+        this.resultCache = null;
         return this;
     }
 
     public ValidatorContext constraintValidatorFactory(
           ConstraintValidatorFactory constraintValidatorFactory) {
+        if (lazyMetaBeanFinder) {
+            metaBeanFinder = null; // determine again, when required
+        }
+        resultCache = null;
         this.constraintValidatorFactory = constraintValidatorFactory;
         return this;
     }
@@ -87,9 +115,39 @@ public class AgimatecFactoryContext implements ValidatorContext {
               AgimatecValidatorConfiguration.Properties.TREAT_MAPS_LIKE_BEANS))) {
             validator.setTreatMapsLikeBeans(true);
         }
+        String maxViolations = factory.getProperties().get(
+              AgimatecValidatorConfiguration.Properties.MAX_VIOLATIONS);
+        if (maxViolations != null) {
+            validator.setMaxViolations(Integer.parseInt(maxViolations));
+        }
+        String threshold = factory.getProperties().get(
+              AgimatecValidatorConfiguration.Properties.PARALLEL_THRESHOLD);
+        if (threshold != null && Integer.parseInt(threshold) > 0) {
+            validator.setParallelValidation(factory.getParallelExecutor(),
+                  factory.getParallelism(), Integer.parseInt(threshold));
+        }
+        validator.setResultCache(getResultCache());
         return validator;
     }
 
+    /**
+     * @return the results of immutable beans for validators of this context, or null
+     * @see AgimatecValidatorConfiguration.Properties#RESULT_CACHE_SIZE
+     */
+    public ResultCache getResultCache() {
+        if (resultCache == null) {
+            if (messageInterpolator == null && traversableResolver == null &&
+                  constraintValidatorFactory == null) {
+                // same configuration as the factory: share the results
+                resultCache = factory.getResultCache();
+            } else {
+                // messages and traversal depend on the configuration
+                resultCache = factory.createResultCache();
+            }
+        }
+        return resultCache;
+    }
+
     public MessageInterpolator getMessageInterpolator() {
         return messageInterpolator == null ? factory.getMessageInterpolator() :
               messageInterpolator;
@@ -104,8 +162,10 @@ public class AgimatecFactoryContext implements ValidatorContext {
      * Create MetaBeanManager that
      * uses JSR303-XML + JSR303-Annotations
      * to build meta-data from.
+     *
+     * @see AgimatecValidatorFactory#getMetaBeanManager()
      */
-    private MetaBeanManager buildMetaBeanManager() {
+    protected MetaBeanManager buildMetaBeanManager() {
         // this is relevant: xml before annotations
         // (because ignore-annotations settings in xml)
         List<MetaBeanFactory> builders = new ArrayList(3);
@@ -113,13 +173,19 @@ public class AgimatecFactoryContext implements ValidatorContext {
               AgimatecValidatorConfiguration.Properties.ENABLE_INTROSPECTOR))) {
             builders.add(new IntrospectorMetaBeanFactory());
         }
-        builders.add(new Jsr303MetaBeanFactory(this));
+        Jsr303MetaBeanFactory jsr303Factory = new Jsr303MetaBeanFactory(this);
+        builders.add(jsr303Factory);
 
         if (Boolean.parseBoolean(factory.getProperties().get(
               AgimatecValidatorConfiguration.Properties.ENABLE_METABEANS_XML))) {
             builders.add(new XMLMetaBeanFactory());
         }
-        return new MetaBeanManager(
+        MetaBeanManager manager = new MetaBeanManager(
               new MetaBeanBuilder(builders.toArray(new MetaBeanFactory[builders.size()])));
+        String maxSize = factory.getProperties().get(
+              AgimatecValidatorConfiguration.Properties.METADATA_CACHE_SIZE);
+        if (maxSize != null) manager.getCache().setMaxSize(Integer.parseInt(maxSize));
+        manager.getCache().addListener(jsr303Factory);
+        return manager;
     }
 }
\ No newline at end of file
@@ -63,5 +63,53 @@ public interface AgimatecValidatorConfiguration
          * default: false 
          */
          String TREAT_MAPS_LIKE_BEANS = "agimatec.treat-maps-like-beans";
+
+        /**
+         * int. minimum number of elements of a collection, array or map
+         * to validate its elements in parallel.<br>
+         * default: 0 (never validate in parallel)
+         */
+        String PARALLEL_THRESHOLD = "agimatec.parallel-threshold";
+
+        /**
+         * int. number of threads to validate in parallel.<br>
+         * default: number of available processors
+         */
+        String PARALLEL_THREADS = "agimatec.parallel-threads";
+
+        /**
+         * int. max. number of violations to report. Validation stops as soon
+         * as the limit has been reached, 1 means fail fast.<br>
+         * default: 0 (unlimited)
+         */
+        String MAX_VIOLATIONS = "agimatec.max-violations";
+
+        /**
+         * int. max. number of validation results of immutable beans to keep
+         * for reuse, see Features.Bean.IMMUTABLE.<br>
+         * default: 0 (no results kept)
+         */
+        String RESULT_CACHE_SIZE = "agimatec.result-cache-size";
+
+        /**
+         * resource name of the index of constrained classes (one class name per line,
+         * # for comments) to use for AgimatecValidatorFactory.prewarm(String).<br>
+         * default: META-INF/validation-classes.index
+         */
+        String PREWARM_INDEX = "agimatec.prewarm-index";
+
+        /**
+         * file name of a metadata snapshot (see AgimatecValidatorFactory.writeMetaData())
+         * to read when the metadata of the factory is created, if the file exists.<br>
+         * default: none
+         */
+        String METADATA_SNAPSHOT = "agimatec.metadata-snapshot";
+
+        /**
+         * int. max. number of MetaBeans to keep, the MetaBeans cached first are
+         * evicted first and built again when required (see MetaBeanCache).<br>
+         * default: 0 (no limit)
+         */
+        String METADATA_CACHE_SIZE = "agimatec.metadata-cache-size";
     }
 }
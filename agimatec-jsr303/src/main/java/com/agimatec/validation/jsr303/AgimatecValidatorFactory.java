@@ -18,18 +18,43 @@
  */
 package com.agimatec.validation.jsr303;
 
+import com.agimatec.validation.MetaBeanManager;
+import com.agimatec.validation.MetaBeanSnapshot;
 import com.agimatec.validation.jsr303.util.SecureActions;
 import com.agimatec.validation.jsr303.xml.AnnotationIgnores;
 import com.agimatec.validation.jsr303.xml.MetaConstraint;
 import com.agimatec.validation.jsr303.xml.ValidationMappingParser;
 import com.agimatec.validation.util.AccessStrategy;
 import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import javax.validation.*;
 import javax.validation.bootstrap.ProviderSpecificBootstrap;
+import javax.validation.metadata.BeanDescriptor;
 import javax.validation.spi.ConfigurationState;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Description: a factory is a complete configurated object that can create validators<br/>
@@ -40,6 +65,10 @@ import java.util.*;
  * Copyright: Agimatec GmbH
  */
 public class AgimatecValidatorFactory implements ValidatorFactory, Cloneable {
+    /** default resource name of the index of constrained classes */
+    public static final String DEFAULT_PREWARM_INDEX = "META-INF/validation-classes.index";
+
+    private static final Log log = LogFactory.getLog(AgimatecValidatorFactory.class);
     private static AgimatecValidatorFactory DEFAULT_FACTORY;
     private static final ConstraintDefaults defaultConstraints = new ConstraintDefaults();
 
@@ -57,6 +86,19 @@ public class AgimatecValidatorFactory implements ValidatorFactory, Cloneable {
      */
     private final Map<Class<?>, List<AccessStrategy>> validAccesses;
     private final Map<Class<?>, List<MetaConstraint<?, ? extends Annotation>>> constraintMap;
+    /**
+     * metadata shared by all contexts that use the ConstraintValidatorFactory
+     * of this factory (built lazy)
+     */
+    private MetaBeanManager metaBeanManager;
+    /** threads to validate large collections in parallel (created lazy) */
+    private ExecutorService parallelExecutor;
+    /** the results of immutable beans shared by the contexts of this factory (created lazy) */
+    private ResultCache resultCache;
+    /** a released validation context per thread, for the validators of this factory */
+    private final ContextPool contextPool = new ContextPool();
+    /** digests of the xml constraint mappings, part of the snapshot configuration */
+    private final SortedSet<String> mappingDigests = new TreeSet<String>();
 
     /** convenience to retrieve a default global AgimatecValidatorFactory */
     public static AgimatecValidatorFactory getDefault() {
@@ -83,7 +125,42 @@ public class AgimatecValidatorFactory implements ValidatorFactory, Cloneable {
         setTraversableResolver(configuration.getTraversableResolver());
         setConstraintValidatorFactory(configuration.getConstraintValidatorFactory());
         ValidationMappingParser parser = new ValidationMappingParser(this);
-        parser.processMappingConfig(configuration.getMappingStreams());
+        parser.processMappingConfig(digestMappings(configuration.getMappingStreams()));
+    }
+
+    /**
+     * read the xml constraint mappings to remember their digests.
+     *
+     * @return streams of the same contents
+     */
+    private Set<InputStream> digestMappings(Set<InputStream> xmlStreams) {
+        final Set<InputStream> contents = new LinkedHashSet<InputStream>(xmlStreams.size());
+        for (InputStream xmlStream : xmlStreams) {
+            final byte[] bytes;
+            try {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[4096];
+                int len;
+                while ((len = xmlStream.read(buffer)) >= 0) {
+                    out.write(buffer, 0, len);
+                }
+                bytes = out.toByteArray();
+            } catch (IOException e) {
+                throw new ValidationException("Unable to read constraint mapping", e);
+            }
+            try {
+                final StringBuilder digest = new StringBuilder(40);
+                for (byte each : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+                    digest.append(Character.forDigit((each >> 4) & 0xF, 16))
+                          .append(Character.forDigit(each & 0xF, 16));
+                }
+                mappingDigests.add(digest.toString());
+            } catch (NoSuchAlgorithmException e) {
+                throw new ValidationException(e);
+            }
+            contents.add(new ByteArrayInputStream(bytes));
+        }
+        return contents;
     }
 
     public Map<String, String> getProperties() {
@@ -108,17 +185,287 @@ public class AgimatecValidatorFactory implements ValidatorFactory, Cloneable {
         return new AgimatecFactoryContext(this);
     }
 
+    /** @return the validation contexts to reuse by the validators of this factory */
+    ContextPool getContextPool() {
+        return contextPool;
+    }
+
+    /**
+     * the metadata of this factory. All validators created by contexts that
+     * do not override the ConstraintValidatorFactory share this instance,
+     * so that MetaBeans, ConstraintValidations and ConstraintValidator
+     * instances are built only once.
+     *
+     * @return the MetaBeanManager for the configuration of this factory
+     */
+    public MetaBeanManager getMetaBeanManager() {
+        final MetaBeanManager manager;
+        synchronized (this) {
+            if (metaBeanManager != null) return metaBeanManager;
+            manager = new AgimatecFactoryContext(this).buildMetaBeanManager();
+            metaBeanManager = manager;
+        }
+        // without the lock: the MetaBeans are verified and read when required
+        readMetaDataSnapshot(manager);
+        return manager;
+    }
+
     @SuppressWarnings({"CloneDoesntDeclareCloneNotSupportedException"})
     @Override
     public synchronized AgimatecValidatorFactory clone() {
         try {
-            return (AgimatecValidatorFactory) super.clone();
+            final AgimatecValidatorFactory clone = (AgimatecValidatorFactory) super.clone();
+            clone.resultCache = null; // the clone can be configured differently
+            return clone;
         } catch (CloneNotSupportedException e) {
             throw new InternalError(); // VM bug.
         }
     }
 
+    /**
+     * build the metadata (MetaBeans, ConstraintValidator instances and BeanDescriptors)
+     * of the classes in advance, so that the first validations do not pay for it.
+     * The classes are processed in parallel by the current thread and by threads
+     * started for this call (see {@link #getParallelism()}), so that the threads of the
+     * parallel executor remain available for validations.
+     *
+     * @return the time in nanoseconds spent for each class, in the order of the classes
+     *         (classes given more than once are processed once)
+     * @throws ValidationException if the metadata of a class cannot be built
+     */
+    public Map<Class<?>, Long> prewarm(Class<?>... classes) {
+        final Validator validator = getValidator();
+        final List<Class<?>> unique =
+              new ArrayList<Class<?>>(new LinkedHashSet<Class<?>>(Arrays.asList(classes)));
+        final List<FutureTask<Long>> tasks = new ArrayList<FutureTask<Long>>(unique.size());
+        for (final Class<?> each : unique) {
+            tasks.add(new FutureTask<Long>(new Callable<Long>() {
+                public Long call() {
+                    final long start = System.nanoTime();
+                    BeanDescriptor descriptor = validator.getConstraintsForClass(each);
+                    descriptor.getConstrainedProperties();
+                    return System.nanoTime() - start;
+                }
+            }));
+        }
+        // the current thread is one of the threads
+        final int threads = Math.min(getParallelism(), unique.size()) - 1;
+        final ExecutorService executor = threads <= 0 ? null :
+              Executors.newFixedThreadPool(threads, new DaemonThreadFactory("prewarm"));
+        try {
+            if (executor != null) {
+                for (FutureTask<Long> each : tasks) {
+                    executor.execute(each);
+                }
+            }
+            // run() does nothing for tasks that another thread has started
+            for (FutureTask<Long> each : tasks) {
+                each.run();
+            }
+            final Map<Class<?>, Long> durations = new LinkedHashMap<Class<?>, Long>();
+            for (int i = 0; i < unique.size(); i++) {
+                try {
+                    durations.put(unique.get(i), tasks.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ValidationException) {
+                        throw (ValidationException) e.getCause();
+                    }
+                    throw new ValidationException("error prewarming " + unique.get(i),
+                          e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ValidationException("prewarming interrupted", e);
+                }
+            }
+            return durations;
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
+    }
+
+    /**
+     * build the metadata of the classes listed in the index resources
+     * (all resources with the name of the index found by the context class loader).
+     *
+     * @param packagePrefix - only the classes with names starting with this prefix,
+     *                      "" for all classes
+     * @return the time in nanoseconds spent for each class
+     * @see AgimatecValidatorConfiguration.Properties#PREWARM_INDEX
+     * @see #prewarm(Class[])
+     */
+    public Map<Class<?>, Long> prewarm(String packagePrefix) {
+        final List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (String each : readPrewarmIndex()) {
+            if (each.startsWith(packagePrefix)) {
+                classes.add(SecureActions.loadClass(each, getClass()));
+            }
+        }
+        return prewarm(classes.toArray(new Class<?>[classes.size()]));
+    }
+
+    /** @return the class names of the index resources, without duplicates */
+    private Collection<String> readPrewarmIndex() {
+        String index = getProperties().get(
+              AgimatecValidatorConfiguration.Properties.PREWARM_INDEX);
+        if (index == null) index = DEFAULT_PREWARM_INDEX;
+        final Set<String> classNames = new LinkedHashSet<String>();
+        try {
+            ClassLoader cl = Thread.currentThread().getContextClassLoader();
+            if (cl == null) cl = AgimatecValidatorFactory.class.getClassLoader();
+            Enumeration<URL> urls = cl.getResources(index);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                BufferedReader br =
+                      new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0 && !line.startsWith("#")) classNames.add(line);
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new ValidationException("Error trying to read " + index, e);
+        }
+        return classNames;
+    }
+
+    /**
+     * write the metadata built so far (e.g. by {@link #prewarm(Class[])}) as a snapshot,
+     * so that a factory with the same configuration can read it instead of building
+     * the metadata again. MetaBeans that cannot be written are left out.
+     *
+     * @return the number of MetaBeans written
+     * @see #readMetaData(InputStream)
+     */
+    public int writeMetaData(OutputStream out) throws IOException {
+        return MetaBeanSnapshot.write(getMetaBeanManager().getCache().findAll().values(),
+              getSnapshotConfiguration(), out,
+              new SnapshotResolver(getConstraintValidatorFactory()));
+    }
+
+    /**
+     * read a snapshot written by {@link #writeMetaData(OutputStream)}.
+     * The snapshot is ignored when it was written with other configuration properties,
+     * other xml constraint mappings or another class of ConstraintValidatorFactory.
+     * Each MetaBean of the snapshot is verified and read when it is first required,
+     * the MetaBeans of classes that have been changed since are built again.
+     *
+     * @return the number of MetaBeans in the snapshot
+     * @see AgimatecValidatorConfiguration.Properties#METADATA_SNAPSHOT
+     */
+    public int readMetaData(InputStream in) throws IOException {
+        return readMetaData(getMetaBeanManager(), in);
+    }
+
+    private int readMetaData(MetaBeanManager manager, InputStream in) throws IOException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) cl = AgimatecValidatorFactory.class.getClassLoader();
+        final MetaBeanSnapshot.Contents contents = MetaBeanSnapshot.open(in,
+              getSnapshotConfiguration(), manager, cl,
+              new SnapshotResolver(getConstraintValidatorFactory()));
+        manager.addSnapshot(contents);
+        return contents.size();
+    }
+
+    private void readMetaDataSnapshot(MetaBeanManager manager) {
+        final String fileName = getProperties().get(
+              AgimatecValidatorConfiguration.Properties.METADATA_SNAPSHOT);
+        if (fileName == null || !new File(fileName).isFile()) return;
+        try {
+            final InputStream in = new BufferedInputStream(new FileInputStream(fileName));
+            try {
+                readMetaData(manager, in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) { // the metadata is built when required
+            log.warn("cannot read metadata snapshot " + fileName, e);
+        }
+    }
+
+    /**
+     * @return the configuration properties, the digests of the xml constraint mappings
+     *         and the ConstraintValidatorFactory class the metadata depends on
+     */
+    private String getSnapshotConfiguration() {
+        final Map<String, String> configuration = new TreeMap<String, String>(getProperties());
+        configuration.remove(AgimatecValidatorConfiguration.Properties.METADATA_SNAPSHOT);
+        configuration.remove(AgimatecValidatorConfiguration.Properties.PREWARM_INDEX);
+        return configuration.toString() + mappingDigests +
+              getConstraintValidatorFactory().getClass().getName();
+    }
+
+    /**
+     * the executor used by validators that validate large collections in parallel.
+     * The threads are daemon threads, so that the executor needs not be shut down.
+     *
+     * @see AgimatecValidatorConfiguration.Properties#PARALLEL_THRESHOLD
+     */
+    public synchronized ExecutorService getParallelExecutor() {
+        if (parallelExecutor == null) {
+            parallelExecutor = Executors.newFixedThreadPool(getParallelism(),
+                  new DaemonThreadFactory("validation"));
+        }
+        return parallelExecutor;
+    }
+
+    /** creates daemon threads, so that executors need not be shut down */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "agimatec-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * the results of immutable beans shared by all contexts that do not override
+     * the configuration of this factory.
+     *
+     * @return the cache or null, when no results are kept
+     * @see AgimatecValidatorConfiguration.Properties#RESULT_CACHE_SIZE
+     */
+    public synchronized ResultCache getResultCache() {
+        if (resultCache == null) {
+            resultCache = createResultCache();
+        }
+        return resultCache;
+    }
+
+    /** @return a new cache for the results of immutable beans or null, when disabled */
+    public ResultCache createResultCache() {
+        String size = getProperties().get(
+              AgimatecValidatorConfiguration.Properties.RESULT_CACHE_SIZE);
+        return size == null || Integer.parseInt(size) <= 0 ? null :
+              new ResultCache(Integer.parseInt(size));
+    }
+
+    /**
+     * @return the number of threads to validate in parallel
+     * @see AgimatecValidatorConfiguration.Properties#PARALLEL_THREADS
+     */
+    public int getParallelism() {
+        String threads = getProperties().get(
+              AgimatecValidatorConfiguration.Properties.PARALLEL_THREADS);
+        return threads == null ? Runtime.getRuntime().availableProcessors() :
+              Integer.parseInt(threads);
+    }
+
     public final void setMessageInterpolator(MessageInterpolator messageResolver) {
+        synchronized (this) {
+            resultCache = null; // the results contain the messages
+        }
         this.messageResolver = messageResolver;
     }
 
@@ -127,6 +474,9 @@ public class AgimatecValidatorFactory implements ValidatorFactory, Cloneable {
     }
 
     public final void setTraversableResolver(TraversableResolver traversableResolver) {
+        synchronized (this) {
+            resultCache = null; // the results depend on the traversal
+        }
         this.traversableResolver = traversableResolver;
     }
 
@@ -140,6 +490,11 @@ public class AgimatecValidatorFactory implements ValidatorFactory, Cloneable {
 
     public final void setConstraintValidatorFactory(
           ConstraintValidatorFactory constraintValidatorFactory) {
+        synchronized (this) {
+            // validator instances in the metadata depend on the ConstraintValidatorFactory
+            metaBeanManager = null;
+            resultCache = null;
+        }
         this.constraintValidatorFactory = constraintValidatorFactory;
     }
 
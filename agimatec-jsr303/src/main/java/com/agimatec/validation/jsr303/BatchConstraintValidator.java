@@ -0,0 +1,46 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+import javax.validation.ConstraintValidator;
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+/**
+ * Description: SPI for constraint validators that check values against an
+ * external resource (e.g. uniqueness or existence in a store), where checking
+ * each value on its own is expensive.<br/>
+ * During the validation of an object graph in a group, the values of such a
+ * constraint are collected instead of being checked one by one. After the
+ * traversal they are checked with a single call of {@link #areValid(java.util.List)}
+ * and the violations are reported with the paths where the values were found.
+ * The violations use the message template of the constraint.<br/>
+ * {@link #isValid(Object, javax.validation.ConstraintValidatorContext)} is still
+ * used where values cannot be collected, e.g. for composed constraints reported as
+ * single violation or when only the validity of an object is requested.<br/>
+ * Copyright: Agimatec GmbH
+ */
+public interface BatchConstraintValidator<A extends Annotation, T>
+      extends ConstraintValidator<A, T> {
+    /**
+     * check all values at once
+     *
+     * @param values - the distinct values collected (according to equals())
+     * @return for each value (same index): true when the value is valid
+     */
+    boolean[] areValid(List<T> values);
+}
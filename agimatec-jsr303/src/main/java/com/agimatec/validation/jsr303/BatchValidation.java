@@ -0,0 +1,398 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+import com.agimatec.validation.jsr303.groups.Group;
+import com.agimatec.validation.jsr303.util.NodeImpl;
+import com.agimatec.validation.jsr303.util.PathImpl;
+import com.agimatec.validation.model.Features;
+import com.agimatec.validation.model.MetaBean;
+import com.agimatec.validation.util.IdentityPairSet;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.metadata.ConstraintDescriptor;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description: the results of beans validated in a group. When a bean is reached
+ * again in the same group, its violations are copied with the path and root bean of
+ * the current validation, instead of validating the bean (and its related beans) again.
+ * Results are reused
+ * <ul>
+ * <li>for the related beans during the validation of a batch of root objects, see
+ * {@link ClassValidator#validateAll(java.util.Collection, Class[])}</li>
+ * <li>for immutable beans (see {@link Features.Bean#IMMUTABLE}) and equal instances
+ * of them, when the validator has a {@link ResultCache}. Only results that refer to no
+ * other objects than the bean (no related beans, no violations with other leaf beans
+ * or mutable invalid values) are cached, because the bean is replaced by the
+ * equal bean, but other objects would not.</li>
+ * </ul>
+ * The result of a bean is only recorded and only reused, when its validation does not
+ * depend on the beans validated before: no bean reached from it has already been
+ * validated in the context (e.g. because of a cycle back to the root object).
+ * Constraints skipped, because they had been validated before (in another group), must
+ * have been validated before the result is reused, too.
+ * Reusing the results assumes that the TraversableResolver does not decide
+ * depending on the root object.<br/>
+ * this instance is not thread-safe!<br/>
+ * Copyright: Agimatec GmbH
+ */
+final class BatchValidation {
+    /** replaces the recorded bean in a result, which is reused for equal beans */
+    private static final Object SELF = new Object();
+
+    /** the results of the beans, a bean can have results for several groups, null: no batch */
+    private final Map<Object, List<Result>> results;
+    /** the results of immutable beans, null: no cache */
+    private final ResultCache cache;
+    /** the innermost bean currently validated and recorded, null: none */
+    private Recording recording;
+    private int reusedCount;
+
+    /**
+     * the result of a bean validated in a group.
+     * The bean itself is replaced by SELF, so that a cached result does not keep it.
+     */
+    static final class Result {
+        private final Group group;
+        /** the beans validated (and their groups) */
+        private final Object[] beans;
+        private final Group[] groups;
+        /** the (bean, constraint) pairs validated */
+        private final Object[] pairs;
+        /** the (bean, constraint) pairs that had been validated before */
+        private final Object[] skippedPairs;
+        private final Violation[] violations;
+
+        private Result(Recording recording) {
+            group = recording.group;
+            beans = self(recording.beans.toArray(), recording.bean);
+            groups = recording.groups.toArray(new Group[recording.groups.size()]);
+            pairs = self(recording.pairs.toArray(), recording.bean);
+            skippedPairs = self(recording.skippedPairs.toArray(), recording.bean);
+            violations = new Violation[recording.listener.getViolationCount()];
+            int i = 0;
+            for (Object each : recording.listener.getConstaintViolations()) {
+                violations[i++] = new Violation((ConstraintViolation) each, recording);
+            }
+        }
+
+        Group getGroup() {
+            return group;
+        }
+
+        /**
+         * @return true when the result refers to no other objects than the bean
+         *         validated, so that it can be reused for equal beans
+         */
+        private boolean isSelfContained() {
+            for (Object each : beans) {
+                if (each != SELF) return false;
+            }
+            for (int i = 0; i < pairs.length; i += 2) {
+                if (pairs[i] != SELF) return false;
+            }
+            for (int i = 0; i < skippedPairs.length; i += 2) {
+                if (skippedPairs[i] != SELF) return false;
+            }
+            for (Violation each : violations) {
+                if (each.leafBean != SELF || !isValue(each.value)) return false;
+            }
+            return true;
+        }
+    }
+
+    /** a violation with the path relative to the recorded bean, without the root bean */
+    private static final class Violation {
+        private final String messageTemplate;
+        private final String message;
+        private final Object leafBean;
+        private final Object value;
+        private final Path.Node[] nodes;
+        private final ConstraintDescriptor constraint;
+
+        private Violation(ConstraintViolation violation, Recording recording) {
+            messageTemplate = violation.getMessageTemplate();
+            message = violation.getMessage();
+            leafBean = self(violation.getLeafBean(), recording.bean);
+            value = self(violation.getInvalidValue(), recording.bean);
+            constraint = violation.getConstraintDescriptor();
+            final List<Path.Node> list = new ArrayList<Path.Node>();
+            final Iterator<Path.Node> it = violation.getPropertyPath().iterator();
+            for (int i = 0; i < recording.pathLength && it.hasNext(); i++) {
+                it.next();
+            }
+            while (it.hasNext()) {
+                list.add(new NodeImpl(it.next()));
+            }
+            nodes = list.toArray(new Path.Node[list.size()]);
+        }
+    }
+
+    /** the state of a bean while it is validated */
+    private static final class Recording {
+        private final Recording parent;
+        private final Object bean;
+        private final Group group;
+        private final int pathLength;
+        /** the listener of the context before the recording */
+        private final ConstraintValidationListener previousListener;
+        /** collects the violations of the bean and its related beans */
+        private final ConstraintValidationListener listener;
+        private final List<Object> beans = new ArrayList<Object>();
+        private final List<Group> groups = new ArrayList<Group>();
+        private final Map<Object, Object> beanSet = new IdentityHashMap<Object, Object>();
+        private final List<Object> pairs = new ArrayList<Object>();
+        private final IdentityPairSet pairSet = new IdentityPairSet();
+        private final List<Object> skippedPairs = new ArrayList<Object>();
+        /** true when the result is kept in the cache (instead of the batch) */
+        private final boolean cached;
+        /** false when the validation depended on beans validated before */
+        private boolean reusable = true;
+
+        private Recording(Recording parent, GroupValidationContextImpl context,
+                          boolean cached) {
+            this.parent = parent;
+            this.cached = cached;
+            bean = context.getBean();
+            group = context.getCurrentGroup();
+            pathLength = size(context.getPropertyPath());
+            previousListener = (ConstraintValidationListener) context.getListener();
+            listener = new ConstraintValidationListener(previousListener.getRootBean());
+        }
+    }
+
+    /**
+     * @param batch - true to reuse the results of all related beans (but not
+     *              of the root objects)
+     * @param cache - the results of immutable beans to use, or null
+     */
+    BatchValidation(boolean batch, ResultCache cache) {
+        this.results = batch ? new IdentityHashMap<Object, List<Result>>() : null;
+        this.cache = cache;
+    }
+
+    /**
+     * @return true when the result of the current bean of the context can be
+     *         reused or recorded
+     */
+    boolean isReusable(GroupValidationContextImpl context) {
+        // the result can only be recorded with all violations, not only their number
+        if (!(context.getListener() instanceof ConstraintValidationListener) ||
+              !((ConstraintValidationListener) context.getListener()).isCollectViolations()) {
+            return false;
+        }
+        return isCached(context) || (results != null && context.getBean() !=
+              ((ConstraintValidationListener) context.getListener()).getRootBean());
+    }
+
+    private boolean isCached(GroupValidationContextImpl context) {
+        return cache != null && isImmutable(context.getMetaBean());
+    }
+
+    /**
+     * validate the current bean of the context by copying the violations of a
+     * previous validation, if possible.
+     *
+     * @return true when done, false when the bean has to be validated
+     */
+    boolean replay(GroupValidationContextImpl context) {
+        final Object bean = context.getBean();
+        Result result = results == null ? null : getResult(bean, context.getCurrentGroup());
+        if (result == null && isCached(context)) {
+            result = cache.get(bean, context.getCurrentGroup());
+        }
+        if (result == null) return false;
+        for (Object each : result.beans) {
+            if (context.isValidated(unself(each, bean))) return false;
+        }
+        for (int i = 0; i < result.pairs.length; i += 2) {
+            if (context.isValidated(unself(result.pairs[i], bean),
+                  (ConstraintValidator) result.pairs[i + 1])) return false;
+        }
+        for (int i = 0; i < result.skippedPairs.length; i += 2) {
+            if (!context.isValidated(unself(result.skippedPairs[i], bean),
+                  (ConstraintValidator) result.skippedPairs[i + 1])) return false;
+        }
+        for (int i = 0; i < result.beans.length; i++) {
+            context.markValidated(unself(result.beans[i], bean), result.groups[i]);
+        }
+        for (int i = 0; i < result.pairs.length; i += 2) {
+            context.collectValidated(unself(result.pairs[i], bean),
+                  (ConstraintValidator) result.pairs[i + 1]);
+        }
+        if (result.violations.length > 0) {
+            final ConstraintValidationListener listener =
+                  (ConstraintValidationListener) context.getListener();
+            final PathImpl path = context.getPropertyPath();
+            for (Violation each : result.violations) {
+                final PathImpl violationPath = PathImpl.copy(path);
+                for (Path.Node node : each.nodes) {
+                    violationPath.addNode(new NodeImpl(node));
+                }
+                listener.addConstraintViolation(new ConstraintViolationImpl(
+                      each.messageTemplate, each.message, listener.getRootBean(),
+                      unself(each.leafBean, bean), violationPath, unself(each.value, bean),
+                      each.constraint));
+            }
+        }
+        reusedCount++;
+        return true;
+    }
+
+    /**
+     * start to record the validation of the current bean of the context.
+     * The context gets a new listener until {@link #stopRecording(GroupValidationContextImpl)}.
+     */
+    void startRecording(GroupValidationContextImpl context) {
+        // root objects of a batch are recorded only when they are immutable
+        recording = new Recording(recording, context, results == null || context.getBean() ==
+              ((ConstraintValidationListener) context.getListener()).getRootBean());
+        context.setListener(recording.listener);
+    }
+
+    /**
+     * store the result of the current bean of the context and add its violations
+     * to the previous listener of the context.
+     */
+    void stopRecording(GroupValidationContextImpl context) {
+        final Recording done = recording;
+        recording = done.parent;
+        context.setListener(done.previousListener);
+        for (Object each : done.listener.getConstaintViolations()) {
+            done.previousListener.addConstraintViolation((ConstraintViolation) each);
+        }
+        if (!done.reusable) return;
+        if (done.cached) {
+            final Result result = new Result(done);
+            if (result.isSelfContained()) cache.put(done.bean, result);
+        } else if (getResult(done.bean, done.group) == null) {
+            List<Result> list = results.get(done.bean);
+            if (list == null) {
+                list = new ArrayList<Result>(1);
+                results.put(done.bean, list);
+            }
+            final Result result = new Result(done);
+            list.add(result);
+            if (cache != null && isImmutable(context.getMetaBean()) &&
+                  result.isSelfContained()) {
+                cache.put(done.bean, result);
+            }
+        }
+    }
+
+    /** @return true while a bean is recorded, see {@link #startRecording(GroupValidationContextImpl)} */
+    boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * callback of the context, when it marks a bean as validated in a group
+     *
+     * @param known  - true when the bean has been validated before in any group
+     * @param marked - true when the bean has not been validated before in the group
+     */
+    void validated(Object bean, Group group, boolean known, boolean marked) {
+        for (Recording each = recording; each != null; each = each.parent) {
+            if (!marked || (known && !each.beanSet.containsKey(bean))) {
+                each.reusable = false;
+            } else {
+                each.beanSet.put(bean, bean);
+                each.beans.add(bean);
+                each.groups.add(group);
+            }
+        }
+    }
+
+    /**
+     * callback of the context, when it collects a validated (bean, constraint) pair
+     *
+     * @param added - false when the pair had already been validated before
+     */
+    void validated(Object bean, ConstraintValidator constraint, boolean added) {
+        for (Recording each = recording; each != null; each = each.parent) {
+            if (added) {
+                each.pairs.add(bean);
+                each.pairs.add(constraint);
+                each.pairSet.add(bean, constraint);
+            } else if (!each.pairSet.contains(bean, constraint)) {
+                each.skippedPairs.add(bean);
+                each.skippedPairs.add(constraint);
+            }
+        }
+    }
+
+    /** @return number of beans whose violations have been copied instead of validating them */
+    int getReusedCount() {
+        return reusedCount;
+    }
+
+    private Result getResult(Object bean, Group group) {
+        final List<Result> list = results.get(bean);
+        if (list != null) {
+            for (Result each : list) {
+                if (each.group.equals(group)) return each;
+            }
+        }
+        return null;
+    }
+
+    /** @return true when the object is an immutable value (or the bean itself) */
+    private static boolean isValue(Object object) {
+        return object == null || object == SELF || object instanceof String ||
+              object instanceof Number || object instanceof Boolean ||
+              object instanceof Character || object instanceof Enum;
+    }
+
+    /**
+     * @return true when the beans of the metaBean are immutable
+     * @see Features.Bean#IMMUTABLE
+     */
+    static boolean isImmutable(MetaBean metaBean) {
+        final Object immutable = metaBean.getFeature(Features.Bean.IMMUTABLE);
+        return immutable != null && Boolean.parseBoolean(immutable.toString());
+    }
+
+    private static Object[] self(Object[] objects, Object bean) {
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = self(objects[i], bean);
+        }
+        return objects;
+    }
+
+    private static Object self(Object object, Object bean) {
+        return object == bean ? SELF : object;
+    }
+
+    private static Object unself(Object object, Object bean) {
+        return object == SELF ? bean : object;
+    }
+
+    private static int size(Path path) {
+        int size = 0;
+        for (Iterator<Path.Node> it = path.iterator(); it.hasNext(); it.next()) {
+            size++;
+        }
+        return size;
+    }
+}
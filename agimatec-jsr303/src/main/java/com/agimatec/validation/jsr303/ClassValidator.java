@@ -18,21 +18,38 @@
  */
 package com.agimatec.validation.jsr303;
 
+import com.agimatec.validation.BeanValidationContext;
 import com.agimatec.validation.BeanValidator;
 import com.agimatec.validation.jsr303.groups.Group;
 import com.agimatec.validation.jsr303.groups.Groups;
 import com.agimatec.validation.jsr303.groups.GroupsComputer;
+import com.agimatec.validation.jsr303.util.PathImpl;
 import com.agimatec.validation.jsr303.util.SecureActions;
 import com.agimatec.validation.model.MetaBean;
+import com.agimatec.validation.model.MetaProperty;
+import com.agimatec.validation.model.Validation;
 import com.agimatec.validation.model.ValidationContext;
+import com.agimatec.validation.model.ValidationPlan;
+import com.agimatec.validation.util.IdentityPairSet;
 import org.apache.commons.lang.ClassUtils;
 
 import javax.validation.ConstraintViolation;
+import javax.validation.Path;
 import javax.validation.ValidationException;
 import javax.validation.Validator;
 import javax.validation.metadata.BeanDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * API class -
@@ -49,10 +66,27 @@ import java.util.Set;
 public class ClassValidator extends BeanValidator implements Validator {
     protected final AgimatecFactoryContext factoryContext;
     protected final GroupsComputer groupsComputer = new GroupsComputer();
+    /** executor to validate large collections in parallel, null: never parallel */
+    private Executor parallelExecutor;
+    /** max. number of parts a collection is split into */
+    private int parallelism;
+    /** min. number of elements of a collection to validate them in parallel */
+    private int parallelThreshold;
+    /** max. number of violations to report, 0 = unlimited */
+    private int maxViolations;
+    /** the results of immutable beans to reuse, null: none */
+    private ResultCache resultCache;
+    /**
+     * the validators with an equal key can reuse the contexts of each other
+     * from the context pool of the factory
+     */
+    private final List<Object> contextOwner;
 
     public ClassValidator(AgimatecFactoryContext factoryContext) {
         super(factoryContext.getMetaBeanFinder());
         this.factoryContext = factoryContext;
+        this.contextOwner = Arrays.asList(getClass(), factoryContext.getMessageInterpolator(),
+              factoryContext.getTraversableResolver());
     }
 
     /** @deprecated provided for backward compatibility */
@@ -70,37 +104,389 @@ public class ClassValidator extends BeanValidator implements Validator {
         if (object == null) throw new IllegalArgumentException("cannot validate null");
         try {
             final GroupValidationContext<ConstraintValidationListener<T>> context =
-                  createContext(factoryContext.getMetaBeanFinder()
-                        .findForClass(object.getClass()), object, groupArray);
-            final ConstraintValidationListener result = context.getListener();
-            final Groups groups = context.getGroups();
-            // 1. process groups
-            for (Group current : groups.getGroups()) {
-                context.setCurrentGroup(current);
-                validateContext(context);
+                  acquireContext(factoryContext.getMetaBeanFinder()
+                        .findForClass(object.getClass()), object, groupArray,
+                        new ConstraintValidationListener<T>(object, maxViolations, true));
+            try {
+                validateInGroups(context);
+                return context.getListener().getConstaintViolations();
+            } finally {
+                releaseContext(context);
             }
-            // 2. process sequences
-            for (List<Group> eachSeq : groups.getSequences()) {
-                for (Group current : eachSeq) {
-                    context.setCurrentGroup(current);
-                    validateContext(context);
-                    /**
-                     * if one of the group process in the sequence leads to one or more validation failure,
-                     * the groups following in the sequence must not be processed
-                     */
-                    if (!result.isEmpty()) break;
+        } catch (RuntimeException ex) {
+            throw unrecoverableValidationError(ex, object);
+        }
+    }
+
+    /**
+     * validate all constraints on each of the objects. Related beans that can be
+     * reached from several objects (e.g. shared reference data) are validated only
+     * once per group for the whole batch. Their violations are reported for each
+     * object that reaches them, with the root bean and the property path of that object.
+     *
+     * @return the violations of each object, in the order of the objects
+     * @throws javax.validation.ValidationException
+     *          if a non recoverable error happens during the validation process
+     */
+    public <T> List<Set<ConstraintViolation<T>>> validateAll(Collection<T> objects,
+                                                             Class<?>... groupArray) {
+        final BatchValidation batch = new BatchValidation(true, resultCache);
+        final List<Set<ConstraintViolation<T>>> result =
+              new ArrayList<Set<ConstraintViolation<T>>>(objects.size());
+        for (T object : objects) {
+            if (object == null) throw new IllegalArgumentException("cannot validate null");
+            try {
+                final GroupValidationContext<ConstraintValidationListener<T>> context =
+                      acquireContext(factoryContext.getMetaBeanFinder()
+                            .findForClass(object.getClass()), object, groupArray,
+                            new ConstraintValidationListener<T>(object, maxViolations, true));
+                try {
+                    if (context instanceof GroupValidationContextImpl) {
+                        // the results can only be reused with the complete bookkeeping
+                        ((GroupValidationContextImpl) context).setTrackValidated(true);
+                        ((GroupValidationContextImpl) context).setBatch(batch);
+                    }
+                    validateInGroups(context);
+                    result.add(context.getListener().getConstaintViolations());
+                } finally {
+                    releaseContext(context);
+                }
+            } catch (RuntimeException ex) {
+                throw unrecoverableValidationError(ex, object);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * validate all constraints on each object of a (large) sequence, one object
+     * after another. The violations of each invalid object are passed to the callback
+     * and not kept by the validator, so that the memory used does not grow with the
+     * number of objects. The validation context and the groups are prepared once
+     * and reused for all objects.
+     *
+     * @param objects  - the objects to validate, null elements are not allowed
+     * @param callback - receives the violations of each invalid object
+     * @return the number of objects validated
+     * @throws javax.validation.ValidationException
+     *          if a non recoverable error happens during the validation process
+     */
+    public <T> int validateEach(Iterator<? extends T> objects, ValidationCallback<T> callback,
+                                Class<?>... groupArray) {
+        final Groups groups = groupsComputer.computeGroups(groupArray);
+        GroupValidationContext<ConstraintValidationListener<T>> context = null;
+        Class<?> beanClass = null;
+        MetaBean metaBean = null;
+        int index = 0;
+        try {
+            while (objects.hasNext()) {
+                final T object = objects.next();
+                if (object == null) throw new IllegalArgumentException("cannot validate null");
+                try {
+                    if (object.getClass() != beanClass) {
+                        beanClass = object.getClass();
+                        metaBean = factoryContext.getMetaBeanFinder().findForClass(beanClass);
+                    }
+                    final ConstraintValidationListener<T> listener =
+                          new ConstraintValidationListener<T>(object, maxViolations, true);
+                    if (context == null ||
+                          !prepareContext(context, metaBean, object, groups, listener)) {
+                        if (context != null) releaseContext(context);
+                        context = acquireContext(metaBean, object, groupArray, listener);
+                    }
+                    validateInGroups(context);
+                    if (!listener.isEmpty() && !callback
+                          .invalid(object, index, listener.getConstaintViolations())) {
+                        return index + 1;
+                    }
+                    index++;
+                } catch (RuntimeException ex) {
+                    throw unrecoverableValidationError(ex, object);
                 }
-//                if (!result.isEmpty()) break; // ?? TODO RSt - clarify!
             }
-            return result.getConstaintViolations();
+            return index;
+        } finally {
+            if (context != null) releaseContext(context);
+        }
+    }
+
+    /**
+     * check all constraints on object, but stop at the first violation.
+     * No ConstraintViolations, paths or messages are created, so this is
+     * the cheapest way to find out whether an object is valid.
+     *
+     * @return true when validate(object, groups) would return no violations
+     * @throws javax.validation.ValidationException
+     *          if a non recoverable error happens during the validation process
+     */
+    public <T> boolean isValid(T object, Class<?>... groupArray) {
+        if (object == null) throw new IllegalArgumentException("cannot validate null");
+        try {
+            final GroupValidationContext<ConstraintValidationListener<T>> context =
+                  acquireContext(factoryContext.getMetaBeanFinder()
+                        .findForClass(object.getClass()), object, groupArray,
+                        new ConstraintValidationListener<T>(object, 1, false));
+            try {
+                validateInGroups(context);
+                return context.getListener().isEmpty();
+            } finally {
+                releaseContext(context);
+            }
         } catch (RuntimeException ex) {
             throw unrecoverableValidationError(ex, object);
         }
     }
 
+    private void validateInGroups(GroupValidationContext<?> context) {
+        final ConstraintValidationListener result =
+              (ConstraintValidationListener) context.getListener();
+        final Groups groups = context.getGroups();
+        // 1. process groups
+        for (Group current : groups.getGroups()) {
+            if (result.isCompleted()) return;
+            context.setCurrentGroup(current);
+            validateContext(context);
+            validateDeferred(context);
+        }
+        // 2. process sequences
+        for (List<Group> eachSeq : groups.getSequences()) {
+            for (Group current : eachSeq) {
+                if (result.isCompleted()) return;
+                context.setCurrentGroup(current);
+                validateContext(context);
+                validateDeferred(context);
+                /**
+                 * if one of the group process in the sequence leads to one or more validation failure,
+                 * the groups following in the sequence must not be processed
+                 */
+                if (!result.isEmpty()) break;
+            }
+//            if (!result.isEmpty()) break; // ?? TODO RSt - clarify!
+        }
+    }
+
+    /** check the values collected for BatchConstraintValidators in the current group */
+    private void validateDeferred(GroupValidationContext<?> context) {
+        if (context instanceof GroupValidationContextImpl) {
+            ((GroupValidationContextImpl) context).validateDeferred();
+        }
+    }
+
+    /**
+     * @param maxViolations - max. number of violations to report, 0 = unlimited.
+     *                      1 = fail fast: stop validation at the first violation.
+     */
+    public void setMaxViolations(int maxViolations) {
+        this.maxViolations = maxViolations;
+    }
+
+    public int getMaxViolations() {
+        return maxViolations;
+    }
+
+    /**
+     * reuse the results of immutable beans, see
+     * {@link com.agimatec.validation.model.Features.Bean#IMMUTABLE}
+     *
+     * @param resultCache - the results to reuse, null: validate each bean
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Override
+    protected boolean isCompleted(ValidationContext context) {
+        return ((ConstraintValidationListener) context.getListener()).isCompleted();
+    }
+
+    /**
+     * configure parallel validation of large collections, arrays and maps
+     * in cascaded validation. The elements are split into parts, that are
+     * validated in separate contexts. The current thread validates the first part
+     * and then each part that the executor has not started yet.
+     *
+     * @param executor  - executes the other parts, null to disable parallel validation
+     * @param parallelism - max. number of parts
+     * @param threshold - min. number of elements to validate in parallel
+     */
+    public void setParallelValidation(Executor executor, int parallelism, int threshold) {
+        this.parallelExecutor = executor;
+        this.parallelism = parallelism;
+        this.parallelThreshold = threshold;
+    }
+
+    @Override
+    public void validateContext(ValidationContext context) {
+        if (parallelExecutor == null || !(context instanceof GroupValidationContextImpl) ||
+              !validateParallel((GroupValidationContextImpl) context)) {
+            super.validateContext(context);
+        }
+    }
+
+    /**
+     * validate the elements of the collection, array or map in parallel
+     *
+     * @return false when the bean of the context is not suitable (too small, not a
+     *         collection) for parallel validation
+     */
+    private boolean validateParallel(GroupValidationContextImpl context) {
+        // no nested parallel validation: forked parts must never wait for other parts
+        if (context.isForked() || parallelism < 2) return false;
+        // a batch records the validated objects of the current context only
+        if (context.getBatch() != null && context.getBatch().isRecording()) return false;
+        final Object bean = context.getBean();
+        final Object[] elements;
+        final Object[] keys; // null: use the index of the element
+        if (bean instanceof Map && !isTreatMapsLikeBeans()) {
+            Map<?, ?> map = (Map) bean;
+            if (map.size() < parallelThreshold) return false;
+            elements = new Object[map.size()];
+            keys = new Object[map.size()];
+            int index = 0;
+            for (Map.Entry entry : map.entrySet()) {
+                keys[index] = entry.getKey();
+                elements[index++] = entry.getValue();
+            }
+        } else if (bean instanceof Collection && !(bean instanceof Map)) {
+            if (((Collection) bean).size() < parallelThreshold) return false;
+            elements = ((Collection) bean).toArray();
+            keys = null;
+        } else if (bean instanceof Object[]) {
+            elements = (Object[]) bean;
+            keys = null;
+        } else {
+            return false;
+        }
+        if (elements.length < parallelThreshold || elements.length < 2) return false;
+
+        final int partSize = (elements.length + parallelism - 1) / parallelism;
+        final int partCount = (elements.length + partSize - 1) / partSize;
+        final MetaBean metaBean = context.getMetaBean();
+        final ConstraintValidationListener listener =
+              (ConstraintValidationListener) context.getListener();
+        final GroupValidationContextImpl[] parts = new GroupValidationContextImpl[partCount];
+        final FutureTask[] tasks = new FutureTask[partCount];
+        for (int i = 0; i < partCount; i++) {
+            // the parts collect the violations to count those of shared beans once,
+            // unless a single violation is of interest (e.g. isValid())
+            final GroupValidationContextImpl part = context.fork(
+                  new ConstraintValidationListener(listener.getRootBean(),
+                        listener.getMaxViolations(), listener.isCollectViolations() ||
+                              listener.getMaxViolations() != 1),
+                  factoryContext.getTraversableResolver());
+            final int from = i * partSize;
+            final int to = Math.min(elements.length, from + partSize);
+            parts[i] = part;
+            tasks[i] = new FutureTask<Object>(new Runnable() {
+                public void run() {
+                    for (int index = from; index < to && !isCompleted(part); index++) {
+                        if (keys == null) part.setCurrentIndex(index);
+                        else part.setCurrentKey(keys[index]);
+                        Object each = elements[index];
+                        if (each == null) continue;
+                        part.setBean(each, getElementMetaBean(metaBean, each));
+                        validateBeanNet(part);
+                    }
+                    part.validateDeferred();
+                }
+            }, null);
+        }
+        try {
+            try {
+                for (int i = 1; i < partCount; i++) {
+                    parallelExecutor.execute(tasks[i]);
+                }
+            } catch (RejectedExecutionException e) {
+                // the current thread validates the parts not submitted
+            }
+            // run() does nothing for parts that another thread has started
+            for (FutureTask each : tasks) {
+                each.run();
+            }
+            for (FutureTask each : tasks) {
+                each.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValidationException("interrupted during validation of " + bean, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new ValidationException("error during validation of " + bean, e.getCause());
+        } finally {
+            for (FutureTask each : tasks) {
+                each.cancel(false);
+            }
+        }
+        joinParts(context, parts);
+        return true;
+    }
+
+    /**
+     * add the violations of the parts in the sequence of the parts to the listener of
+     * the context (or only count them, when the listener does not collect violations).
+     * When a constraint of an object has been violated in more than one part (because
+     * the object is referenced from elements in different parts), only the violations of
+     * the first part are reported - as it would happen without parallel validation.
+     * The parts are compared by the (leaf bean, constraint) pairs of their violations,
+     * which does not depend on the validated objects being tracked.
+     */
+    private void joinParts(GroupValidationContextImpl context,
+                           GroupValidationContextImpl[] parts) {
+        final ConstraintValidationListener listener =
+              (ConstraintValidationListener) context.getListener();
+        final IdentityPairSet reported = new IdentityPairSet();
+        for (GroupValidationContextImpl part : parts) {
+            final ConstraintValidationListener<?> partListener =
+                  (ConstraintValidationListener) part.getListener();
+            if (!partListener.isCollectViolations()) { // a single violation: no duplicates
+                listener.addViolationCount(partListener.getViolationCount());
+                continue;
+            }
+            final IdentityPairSet reportedByPart = new IdentityPairSet();
+            for (ConstraintViolation each : partListener.getConstaintViolations()) {
+                if (reported.contains(each.getLeafBean(), each.getConstraintDescriptor())) {
+                    continue;
+                }
+                reportedByPart.add(each.getLeafBean(), each.getConstraintDescriptor());
+                if (listener.isCollectViolations()) {
+                    listener.addConstraintViolation(each);
+                } else {
+                    listener.addViolationCount(1);
+                }
+            }
+            reported.addAll(reportedByPart);
+        }
+        for (GroupValidationContextImpl part : parts) {
+            context.join(part);
+        }
+    }
+
     @Override
     public void validateBeanNet(ValidationContext vcontext) {
-        GroupValidationContext context = (GroupValidationContext) vcontext;
+        final BatchValidation batch = vcontext instanceof GroupValidationContextImpl ?
+              ((GroupValidationContextImpl) vcontext).getBatch() : null;
+        if (batch == null || !batch.isReusable((GroupValidationContextImpl) vcontext)) {
+            validateBeanNetInGroups((GroupValidationContext) vcontext);
+        } else {
+            // a related bean in a batch or an immutable bean: reuse its result, if known
+            final GroupValidationContextImpl context = (GroupValidationContextImpl) vcontext;
+            if (!batch.replay(context)) {
+                batch.startRecording(context);
+                try {
+                    validateBeanNetInGroups(context);
+                } finally {
+                    batch.stopRecording(context);
+                }
+            }
+        }
+    }
+
+    private void validateBeanNetInGroups(GroupValidationContext context) {
         List<Group> defaultGroups = expandDefaultGroup(context);
         if (defaultGroups != null) {
             Group currentGroup = context.getCurrentGroup();
@@ -159,42 +545,57 @@ public class ClassValidator extends BeanValidator implements Validator {
             MetaBean metaBean =
                   factoryContext.getMetaBeanFinder().findForClass(object.getClass());
             GroupValidationContext<ConstraintValidationListener<T>> context =
-                  createContext(metaBean, object, groups);
-            ConstraintValidationListener result = context.getListener();
-            NestedMetaProperty nestedProp = getNestedProperty(metaBean, object, propertyName);
-            context.setMetaProperty(nestedProp.getMetaProperty());
-            if (nestedProp.isNested()) {
-                context.setFixedValue(nestedProp.getValue());
-            } else {
+                  acquireContext(metaBean, object, groups,
+                        new ConstraintValidationListener<T>(object, maxViolations, true));
+            try {
+                NestedMetaProperty nestedProp =
+                      getNestedProperty(metaBean, object, propertyName);
                 context.setMetaProperty(nestedProp.getMetaProperty());
-            }
-            if (context.getMetaProperty() == null) throw new IllegalArgumentException(
-                  "Unknown property " + object.getClass().getName() + "." + propertyName);
-            Groups sequence = context.getGroups();
-            // 1. process groups
-            for (Group current : sequence.getGroups()) {
-                context.setCurrentGroup(current);
-                validatePropertyInGroup(context);
-            }
-            // 2. process sequences
-            for (List<Group> eachSeq : sequence.getSequences()) {
-                for (Group current : eachSeq) {
-                    context.setCurrentGroup(current);
-                    validatePropertyInGroup(context);
-                    /**
-                     * if one of the group process in the sequence leads to one or more validation failure,
-                     * the groups following in the sequence must not be processed
-                     */
-                    if (!result.isEmpty()) break;
+                if (nestedProp.isNested()) {
+                    context.setFixedValue(nestedProp.getValue());
+                } else {
+                    context.setMetaProperty(nestedProp.getMetaProperty());
                 }
-//                if (!result.isEmpty()) break; // ?? TODO RSt - clarify!
+                if (context.getMetaProperty() == null) throw new IllegalArgumentException(
+                      "Unknown property " + object.getClass().getName() + "." + propertyName);
+                validatePropertyInGroups(context);
+                return context.getListener().getConstaintViolations();
+            } finally {
+                releaseContext(context);
             }
-            return result.getConstaintViolations();
         } catch (RuntimeException ex) {
             throw unrecoverableValidationError(ex, object);
         }
     }
 
+    private void validatePropertyInGroups(GroupValidationContext<?> context) {
+        final ConstraintValidationListener result =
+              (ConstraintValidationListener) context.getListener();
+        Groups sequence = context.getGroups();
+        // 1. process groups
+        for (Group current : sequence.getGroups()) {
+            if (result.isCompleted()) return;
+            context.setCurrentGroup(current);
+            validatePropertyInGroup(context);
+            validateDeferred(context);
+        }
+        // 2. process sequences
+        for (List<Group> eachSeq : sequence.getSequences()) {
+            for (Group current : eachSeq) {
+                if (result.isCompleted()) return;
+                context.setCurrentGroup(current);
+                validatePropertyInGroup(context);
+                validateDeferred(context);
+                /**
+                 * if one of the group process in the sequence leads to one or more validation failure,
+                 * the groups following in the sequence must not be processed
+                 */
+                if (!result.isEmpty()) break;
+            }
+//            if (!result.isEmpty()) break; // ?? TODO RSt - clarify!
+        }
+    }
+
     private void validatePropertyInGroup(GroupValidationContext context) {
         Group currentGroup = context.getCurrentGroup();
         List<Group> defaultGroups = expandDefaultGroup(context);
@@ -210,6 +611,224 @@ public class ClassValidator extends BeanValidator implements Validator {
         }
     }
 
+    /**
+     * validate an object again after some of its properties (or properties of related
+     * beans) have changed, reusing the violations of the previous validation.
+     * Only the constraints of the changed properties, the bean-level constraints of
+     * the beans owning them and the related beans of changed relationships are
+     * validated. Their previous violations are replaced by the new ones.
+     * The groups of a group sequence that follow a group that failed before,
+     * but does not fail anymore, are validated completely.
+     *
+     * @param previous     - the violations of the previous validation of the object
+     *                     in the same groups
+     * @param changedPaths - the paths of the changed properties, e.g. "author.lastName".
+     *                     A path to an element (e.g. "items[2]") changes the whole
+     *                     property ("items").
+     * @return the violations of the object
+     * @throws javax.validation.ValidationException
+     *          if a non recoverable error happens during the validation process
+     */
+    public <T> Set<ConstraintViolation<T>> revalidate(T object,
+                                                      Set<ConstraintViolation<T>> previous,
+                                                      Collection<String> changedPaths,
+                                                      Class<?>... groups) {
+        if (object == null) throw new IllegalArgumentException("cannot validate null");
+        try {
+            final MetaBean metaBean =
+                  factoryContext.getMetaBeanFinder().findForClass(object.getClass());
+            final NestedMetaProperty[] changes = new NestedMetaProperty[changedPaths.size()];
+            final PathImpl[] beanPaths = new PathImpl[changes.length];
+            final List<List<Path.Node>> propertyPaths =
+                  new ArrayList<List<Path.Node>>(changes.length);
+            int i = 0;
+            for (String each : changedPaths) {
+                while (each.endsWith("]")) each = each.substring(0, each.lastIndexOf('['));
+                changes[i] = getNestedProperty(metaBean, object, each);
+                PathImpl path = PathImpl.createPathFromString(each);
+                beanPaths[i++] = path.getPathWithoutLeafNode();
+                propertyPaths.add(getNodes(path));
+            }
+            final Set<ConstraintViolation<T>> kept = new HashSet<ConstraintViolation<T>>();
+            for (ConstraintViolation<T> each : previous) {
+                if (!isAffected(getNodes(each.getPropertyPath()), propertyPaths)) {
+                    kept.add(each);
+                }
+            }
+            final GroupValidationContext<ConstraintValidationListener<T>> context =
+                  acquireContext(metaBean, object, groups,
+                        new ConstraintValidationListener<T>(object, maxViolations, true));
+            try {
+                if (!(context instanceof GroupValidationContextImpl)) {
+                    throw new ValidationException("incremental validation not supported by " +
+                          context.getClass().getName());
+                }
+                revalidateInGroups((GroupValidationContextImpl) context, object, metaBean,
+                      changes, beanPaths, previous, kept);
+                kept.addAll(context.getListener().getConstaintViolations());
+                return kept;
+            } finally {
+                releaseContext(context);
+            }
+        } catch (RuntimeException ex) {
+            throw unrecoverableValidationError(ex, object);
+        }
+    }
+
+    /** @return the nodes of the path without the root node */
+    private static List<Path.Node> getNodes(Path path) {
+        final List<Path.Node> nodes = new ArrayList<Path.Node>();
+        for (Path.Node each : path) {
+            if (nodes.isEmpty() && each.getName() == null && !each.isInIterable()) {
+                continue; // the root bean
+            }
+            nodes.add(each);
+        }
+        return nodes;
+    }
+
+    /**
+     * @return true when the violation with the path belongs to a changed property,
+     *         to a bean beneath a changed property or to a bean owning a changed property
+     */
+    private static boolean isAffected(List<Path.Node> path,
+                                      List<List<Path.Node>> propertyPaths) {
+        for (List<Path.Node> each : propertyPaths) {
+            final int owner = each.size() - 1;
+            if (path.size() < owner || !path.subList(0, owner).equals(each.subList(0, owner))) {
+                continue;
+            }
+            if (path.size() == owner) return true; // a bean-level constraint of the owner
+            final String name = each.get(owner).getName();
+            // the whole property has changed, including all of its elements
+            if (name != null && name.equals(path.get(owner).getName())) return true;
+        }
+        return false;
+    }
+
+    private <T> void revalidateInGroups(GroupValidationContextImpl context, T object,
+                                        MetaBean metaBean, NestedMetaProperty[] changes,
+                                        PathImpl[] beanPaths,
+                                        Set<ConstraintViolation<T>> previous,
+                                        Set<ConstraintViolation<T>> kept) {
+        final ConstraintValidationListener result =
+              (ConstraintValidationListener) context.getListener();
+        final Groups groups = context.getGroups();
+        // 1. process groups
+        for (Group current : groups.getGroups()) {
+            if (result.isCompleted()) return;
+            context.setCurrentGroup(current);
+            revalidateInGroup(context, changes, beanPaths);
+            validateDeferred(context);
+        }
+        // 2. process sequences
+        for (List<Group> eachSeq : groups.getSequences()) {
+            // true when the following groups have not been validated before
+            boolean unvalidated = false;
+            for (int i = 0; i < eachSeq.size(); i++) {
+                final Group current = eachSeq.get(i);
+                if (result.isCompleted()) return;
+                context.setCurrentGroup(current);
+                if (unvalidated) {
+                    context.moveTo(null);
+                    context.setBean(object, metaBean);
+                    validateContext(context);
+                } else {
+                    revalidateInGroup(context, changes, beanPaths);
+                }
+                validateDeferred(context);
+                final boolean failedBefore = hasViolations(previous, current);
+                if (!result.isEmpty() || hasViolations(kept, current)) {
+                    // the following groups are not validated, when the group failed
+                    if (!failedBefore && !unvalidated) {
+                        removeViolations(kept, eachSeq.subList(i + 1, eachSeq.size()),
+                              eachSeq.subList(0, i + 1));
+                    }
+                    break;
+                }
+                if (failedBefore) unvalidated = true;
+            }
+        }
+    }
+
+    /**
+     * remove the violations of constraints of the groups that are not validated,
+     * unless they belong to one of the groups validated, too
+     */
+    private static void removeViolations(Set<? extends ConstraintViolation<?>> violations,
+                                         List<Group> unvalidated, List<Group> validated) {
+        for (Iterator<? extends ConstraintViolation<?>> it = violations.iterator();
+             it.hasNext();) {
+            final ConstraintViolation<?> each = it.next();
+            if (each.getConstraintDescriptor() == null) continue;
+            final Set<Class<?>> constraintGroups = each.getConstraintDescriptor().getGroups();
+            if (containsAny(constraintGroups, unvalidated) &&
+                  !containsAny(constraintGroups, validated)) {
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean containsAny(Set<Class<?>> constraintGroups, List<Group> groups) {
+        for (Group each : groups) {
+            if (constraintGroups.contains(each.getGroup())) return true;
+        }
+        return false;
+    }
+
+    /** @return true when one of the violations belongs to a constraint of the group */
+    private static boolean hasViolations(Set<? extends ConstraintViolation<?>> violations,
+                                         Group group) {
+        for (ConstraintViolation<?> each : violations) {
+            if (each.getConstraintDescriptor() != null &&
+                  each.getConstraintDescriptor().getGroups().contains(group.getGroup())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void revalidateInGroup(GroupValidationContextImpl context,
+                                   NestedMetaProperty[] changes, PathImpl[] beanPaths) {
+        final Group currentGroup = context.getCurrentGroup();
+        for (int i = 0; i < changes.length; i++) {
+            if (changes[i].getOwner() == null) continue; // the bean is no longer reachable
+            context.moveTo(beanPaths[i]);
+            context.setBean(changes[i].getOwner(), changes[i].getOwnerMetaBean());
+            List<Group> defaultGroups = expandDefaultGroup(context);
+            if (defaultGroups != null) {
+                for (Group each : defaultGroups) {
+                    context.setCurrentGroup(each);
+                    revalidateProperty(context, changes[i].getMetaProperty());
+                }
+                context.setCurrentGroup(currentGroup); // restore
+            } else {
+                revalidateProperty(context, changes[i].getMetaProperty());
+            }
+        }
+    }
+
+    /**
+     * validate the constraints of the property, the bean-level constraints and
+     * the related bean(s) of the property of the current bean of the context
+     */
+    private void revalidateProperty(GroupValidationContextImpl context,
+                                    MetaProperty property) {
+        final ValidationPlan plan = context.getMetaBean().getValidationPlan();
+        context.setMetaProperty(property);
+        validateProperty(context);
+        context.setMetaProperty(null);
+        for (Validation each : plan.getBeanValidations()) {
+            if (isCompleted(context)) return;
+            each.validate(context);
+        }
+        for (ValidationPlan.Cascade each : plan.getCascades()) {
+            if (each.getProperty() == property && !isCompleted(context)) {
+                validateRelatedBean(context, each);
+            }
+        }
+    }
+
     /**
      * find the MetaProperty for the given propertyName,
      * which could contain a path, following the path on a given object to resolve
@@ -237,39 +856,102 @@ public class ClassValidator extends BeanValidator implements Validator {
         try {
             MetaBean metaBean = factoryContext.getMetaBeanFinder().findForClass(beanType);
             GroupValidationContext<ConstraintValidationListener<T>> context =
-                  createContext(metaBean, null, groups);
-            ConstraintValidationListener result = context.getListener();
-            context.setMetaProperty(
-                  getNestedProperty(metaBean, null, propertyName).getMetaProperty());
-            context.setFixedValue(value);
-            Groups sequence = context.getGroups();
-            // 1. process groups
-            for (Group current : sequence.getGroups()) {
-                context.setCurrentGroup(current);
-                validatePropertyInGroup(context);
-            }
-            // 2. process sequences
-            for (List<Group> eachSeq : sequence.getSequences()) {
-                for (Group current : eachSeq) {
-                    context.setCurrentGroup(current);
-                    validatePropertyInGroup(context);
-                    /**
-                     * if one of the group process in the sequence leads to one or more validation failure,
-                     * the groups following in the sequence must not be processed
-                     */
-                    if (!result.isEmpty()) break;
-                }
-//                if (!result.isEmpty()) break; // ?? TODO RSt - clarify!
+                  acquireContext(metaBean, null, groups,
+                        new ConstraintValidationListener<T>(null, maxViolations, true));
+            try {
+                context.setMetaProperty(
+                      getNestedProperty(metaBean, null, propertyName).getMetaProperty());
+                context.setFixedValue(value);
+                validatePropertyInGroups(context);
+                return context.getListener().getConstaintViolations();
+            } finally {
+                releaseContext(context);
             }
-            return result.getConstaintViolations();
         } catch (RuntimeException ex) {
             throw unrecoverableValidationError(ex, value);
         }
     }
 
+    /**
+     * @return the context released in the current thread by a validator with the same
+     *         configuration and class, prepared with {@link #prepareContext}, or a new
+     *         context created with {@link #createContext}
+     * @see #releaseContext(GroupValidationContext)
+     */
+    private <T> GroupValidationContext<ConstraintValidationListener<T>> acquireContext(
+          MetaBean metaBean, T object, Class<?>[] groups,
+          ConstraintValidationListener<T> listener) {
+        final GroupValidationContext<ConstraintValidationListener<T>> pooled =
+              factoryContext.getFactory().getContextPool().acquire(contextOwner);
+        if (pooled != null && prepareContext(pooled, metaBean, object,
+              groupsComputer.computeGroups(groups), listener)) {
+            return pooled;
+        }
+        final GroupValidationContext<ConstraintValidationListener<T>> context =
+              createContext(metaBean, object, groups, listener);
+        if (context instanceof BeanValidationContext) {
+            ((BeanValidationContext) context).setTrackValidated(isTrackValidated(metaBean));
+        }
+        if (resultCache != null && context instanceof GroupValidationContextImpl) {
+            ((GroupValidationContextImpl) context)
+                  .setBatch(new BatchValidation(false, resultCache));
+        }
+        return context;
+    }
+
+    /**
+     * reset a context of a previous validation (created by {@link #createContext})
+     * to validate the object with a new listener.
+     * Subclasses that create other contexts can override this method.
+     *
+     * @return false when the context cannot be reused
+     */
+    protected <T> boolean prepareContext(
+          GroupValidationContext<ConstraintValidationListener<T>> context,
+          MetaBean metaBean, T object, Groups groups,
+          ConstraintValidationListener<T> listener) {
+        if (!(context instanceof GroupValidationContextImpl)) return false;
+        final GroupValidationContextImpl<ConstraintValidationListener<T>> impl =
+              (GroupValidationContextImpl<ConstraintValidationListener<T>>) context;
+        impl.reset(listener, metaBean);
+        impl.setBean(object, metaBean);
+        impl.setGroups(groups);
+        impl.setTrackValidated(isTrackValidated(metaBean));
+        if (resultCache != null) impl.setBatch(new BatchValidation(false, resultCache));
+        return true;
+    }
+
+    /**
+     * @return false when the plan of the root bean has no cascades, so that no other
+     *         object is validated and need not be remembered. Otherwise the validated
+     *         objects are tracked, even when the graph is acyclic: beans shared by
+     *         several referrers are traversed once.
+     */
+    private static boolean isTrackValidated(MetaBean metaBean) {
+        return metaBean.getValidationPlan().getCascades().length > 0;
+    }
+
+    /**
+     * reset the context and keep it in the context pool of the factory
+     * for the next validation in the current thread
+     */
+    private void releaseContext(GroupValidationContext context) {
+        if (context instanceof GroupValidationContextImpl) {
+            ((GroupValidationContextImpl) context).reset(null, null);
+            factoryContext.getFactory().getContextPool()
+                  .release(contextOwner, (GroupValidationContextImpl) context);
+        }
+    }
+
     protected <T> GroupValidationContext<ConstraintValidationListener<T>> createContext(
           MetaBean metaBean, T object, Class<?>[] groups) {
-        ConstraintValidationListener<T> listener = new ConstraintValidationListener<T>(object);
+        return createContext(metaBean, object, groups,
+              new ConstraintValidationListener<T>(object, maxViolations, true));
+    }
+
+    protected <T> GroupValidationContext<ConstraintValidationListener<T>> createContext(
+          MetaBean metaBean, T object, Class<?>[] groups,
+          ConstraintValidationListener<T> listener) {
         GroupValidationContextImpl<ConstraintValidationListener<T>> context =
               new GroupValidationContextImpl(listener,
                     this.factoryContext.getMessageInterpolator(),
@@ -0,0 +1,42 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+/**
+ * Description: the members of a class that declare constraints (or &#064;Valid),
+ * generated at compile time by the annotation processor of agimatec-jsr303-processor.
+ * {@link Jsr303MetaBeanFactory} reads the annotations of these members only, instead
+ * of the annotations of all declared fields and getters of the class.<br/>
+ * The provider of a class is named like the class with the suffix
+ * {@link #CLASS_NAME_SUFFIX}, in the same package, and is registered in
+ * <code>META-INF/services/com.agimatec.validation.jsr303.ConstraintMetaDataProvider</code>.
+ * Providers must be generated by the same compilation as their classes,
+ * a stale provider leads to missing constraints.
+ */
+public interface ConstraintMetaDataProvider {
+    /** appended to the name of the bean class to get the name of its provider */
+    String CLASS_NAME_SUFFIX = "$$ConstraintMetaData";
+
+    /** @return the name of the class whose members are described */
+    String getBeanClassName();
+
+    /** @return the names of the declared fields with constraints or &#064;Valid */
+    String[] getConstrainedFields();
+
+    /** @return the names of the declared methods with constraints or &#064;Valid */
+    String[] getConstrainedMethods();
+}
@@ -27,24 +27,33 @@ import com.agimatec.validation.model.ValidationContext;
 import com.agimatec.validation.util.AccessStrategy;
 
 import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorFactory;
 import javax.validation.Payload;
 import javax.validation.ValidationException;
 import javax.validation.metadata.ConstraintDescriptor;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.util.*;
 
 /**
  * Description: Adapter between Constraint (JSR303) and Validation (Agimatec)<br/>
  * this instance is immutable!<br/>
+ * The constraint validator is not serialized, but its class. After deserialization,
+ * the validator is created again by {@link #initValidator(ConstraintValidatorFactory)}.<br/>
  * User: roman.stumm <br/>
  * Date: 01.04.2008 <br/>
  * Time: 17:31:36 <br/>
  * Copyright: Agimatec GmbH 2008
  */
 public class ConstraintValidation<T extends Annotation>
-      implements Validation, ConstraintDescriptor<T> {
+      implements Validation, ConstraintDescriptor<T>, Serializable {
     private static final String ANNOTATION_MESSAGE = "message";
-    private final ConstraintValidator validator;
+    private transient ConstraintValidator validator;
+    /** the class of the validator, when deserialized and not yet initialized */
+    private transient Class<? extends ConstraintValidator> validatorType;
     private final T annotation; // for metadata request API
     private final AccessStrategy access;
     private final boolean reportFromComposite;
@@ -125,8 +134,9 @@ public class ConstraintValidation<T extends Annotation>
             BeanValidationContext gctx = (BeanValidationContext) context;
             ConstraintValidationListener oldListener =
                   ((ConstraintValidationListener) gctx.getListener());
+            // only the information whether a composing constraint fails is required
             ConstraintValidationListener listener =
-                  new ConstraintValidationListener(oldListener.getRootBean());
+                  new ConstraintValidationListener(oldListener.getRootBean(), 1, false);
             gctx.setListener(listener);
             try {
                 for (ConstraintValidation composed : getComposingValidations()) {
@@ -136,7 +146,7 @@ public class ConstraintValidation<T extends Annotation>
                 gctx.setListener(oldListener);
             }
             // stop validating when already failed and ReportAsSingleInvalidConstraint = true ?
-            if (!listener.getConstaintViolations().isEmpty()) {
+            if (!listener.isEmpty()) {
                 // TODO RSt - how should the composed constraint error report look like?
                 ConstraintValidatorContextImpl jsrContext =
                       new ConstraintValidatorContextImpl(context, this);
@@ -150,6 +160,11 @@ public class ConstraintValidation<T extends Annotation>
         }
 
         if (validator != null) {
+            if (validator instanceof BatchConstraintValidator &&
+                  context instanceof GroupValidationContextImpl &&
+                  ((GroupValidationContextImpl) context).defer(this)) {
+                return; // checked together with other values after the traversal
+            }
             ConstraintValidatorContextImpl jsrContext =
                   new ConstraintValidatorContextImpl(context, this);
             if (!validator.isValid(context.getValidatedValue(), jsrContext)) {
@@ -207,6 +222,19 @@ public class ConstraintValidation<T extends Annotation>
         return validator;
     }
 
+    /**
+     * create and initialize the validator of a deserialized instance.
+     * @param factory - to create the validator
+     */
+    void initValidator(ConstraintValidatorFactory factory) {
+        if (validatorType != null) {
+            final ConstraintValidator newValidator = factory.getInstance(validatorType);
+            newValidator.initialize(annotation);
+            validator = newValidator;
+            validatorType = null;
+        }
+    }
+
     protected boolean isMemberOf(Class<?> reqGroup) {
         /**
          * owner: implicit grouping support:
@@ -254,4 +282,14 @@ public class ConstraintValidation<T extends Annotation>
         return Arrays.asList(validatorClasses);
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(validator == null ? validatorType : validator.getClass());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        validatorType = (Class<? extends ConstraintValidator>) in.readObject();
+    }
+
 }
@@ -35,11 +35,29 @@ import java.util.Set;
  * Copyright: Agimatec GmbH 2008
  */
 public final class ConstraintValidationListener<T> implements ValidationListener {
-    private final Set<ConstraintViolation<T>> constaintViolations = new HashSet();
+    /** created when the first violation is added or when requested */
+    private Set<ConstraintViolation<T>> constaintViolations;
     private final T rootBean;
+    /** max. number of violations to collect, 0 = unlimited */
+    private final int maxViolations;
+    /** false: count the violations only, do not create ConstraintViolations */
+    private final boolean collectViolations;
+    private int violationCount;
 
     public ConstraintValidationListener(T aRootBean) {
+        this(aRootBean, 0, true);
+    }
+
+    /**
+     * @param aRootBean         - the bean the validation started with
+     * @param maxViolations     - max. number of violations, 0 = unlimited
+     * @param collectViolations - false when only the number of violations is of interest
+     */
+    public ConstraintValidationListener(T aRootBean, int maxViolations,
+                                        boolean collectViolations) {
         this.rootBean = aRootBean;
+        this.maxViolations = maxViolations;
+        this.collectViolations = collectViolations;
     }
 
     @SuppressWarnings({"ManualArrayToCollectionCopy"})
@@ -57,6 +75,9 @@ public final class ConstraintValidationListener<T> implements ValidationListener
 
     private void addError(String messageTemplate, Path propPath,
                           ValidationContext context) {
+        if (isCompleted()) return;
+        violationCount++;
+        if (!collectViolations) return;
         final Object value;
 
         final ConstraintDescriptor constraint;
@@ -84,15 +105,51 @@ public final class ConstraintValidationListener<T> implements ValidationListener
         }
         ConstraintViolationImpl<T> ic = new ConstraintViolationImpl<T>(messageTemplate,
               message, rootBean, context.getBean(), propPath, value, constraint);
-        constaintViolations.add(ic);
+        getConstaintViolations().add(ic);
+    }
+
+    /** add a violation that has been found with another listener */
+    void addConstraintViolation(ConstraintViolation<T> violation) {
+        if (isCompleted()) return;
+        violationCount++;
+        getConstaintViolations().add(violation);
+    }
+
+    /** add the number of violations that have been counted by another listener */
+    void addViolationCount(int count) {
+        violationCount += count;
+        if (maxViolations > 0 && violationCount > maxViolations) {
+            violationCount = maxViolations;
+        }
     }
 
     public Set<ConstraintViolation<T>> getConstaintViolations() {
+        if (constaintViolations == null) {
+            constaintViolations = new HashSet();
+        }
         return constaintViolations;
     }
 
     public boolean isEmpty() {
-        return constaintViolations.isEmpty();
+        return violationCount == 0;
+    }
+
+    /** @return the number of violations found so far */
+    public int getViolationCount() {
+        return violationCount;
+    }
+
+    /** @return true when the max. number of violations has been reached */
+    public boolean isCompleted() {
+        return maxViolations > 0 && violationCount >= maxViolations;
+    }
+
+    public int getMaxViolations() {
+        return maxViolations;
+    }
+
+    public boolean isCollectViolations() {
+        return collectViolations;
     }
 
     public T getRootBean() {
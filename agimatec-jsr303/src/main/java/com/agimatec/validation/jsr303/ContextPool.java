@@ -0,0 +1,62 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+/**
+ * Description: the validation context released last in each thread, to be reused
+ * by the next validation of a validator of the same factory. Validators are usually
+ * created per request, so the pool belongs to the factory and not to a validator.
+ * A context is only handed out to a validator with the same owner key
+ * (validator class, MessageInterpolator and TraversableResolver) as the validator
+ * that released it. A released context holds no references to validated objects.<br/>
+ * this instance is thread-safe.
+ */
+final class ContextPool {
+    /** the owner and the released context of a thread */
+    private static final class Entry {
+        Object owner;
+        GroupValidationContextImpl context;
+    }
+
+    private final ThreadLocal<Entry> entries = new ThreadLocal<Entry>() {
+        @Override
+        protected Entry initialValue() {
+            return new Entry();
+        }
+    };
+
+    /**
+     * take the context released in the current thread. A nested validation, e.g.
+     * inside of a ConstraintValidator, finds no context and creates a new one.
+     *
+     * @return the context released by a validator with an equal owner, or null
+     */
+    GroupValidationContextImpl acquire(Object owner) {
+        final Entry entry = entries.get();
+        final GroupValidationContextImpl context = entry.context;
+        if (context == null || !entry.owner.equals(owner)) return null;
+        entry.context = null;
+        return context;
+    }
+
+    /** keep the (reset) context for the next validation in the current thread */
+    void release(Object owner, GroupValidationContextImpl context) {
+        final Entry entry = entries.get();
+        entry.owner = owner;
+        entry.context = context;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+import com.agimatec.validation.jsr303.util.PathImpl;
+
+import javax.validation.MessageInterpolator;
+import javax.validation.ValidationException;
+import javax.validation.metadata.ConstraintDescriptor;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description: the values of the constraints with a {@link BatchConstraintValidator},
+ * collected during the traversal of the object graph in one group, to be checked
+ * with one call per constraint validator.<br/>
+ * this instance is not thread-safe!<br/>
+ * Copyright: Agimatec GmbH
+ */
+final class DeferredConstraints {
+    private final MessageInterpolator messageResolver;
+    /** the collected checks of each validator, in the sequence of the traversal */
+    private final Map<BatchConstraintValidator, List<Check>> checks =
+          new IdentityHashMap<BatchConstraintValidator, List<Check>>();
+    /** the sequence of the validators, for a deterministic sequence of the violations */
+    private final List<BatchConstraintValidator> validators =
+          new ArrayList<BatchConstraintValidator>();
+
+    /** a value to check and where it has been found */
+    private static final class Check implements MessageInterpolator.Context {
+        private final ConstraintValidation constraint;
+        private final Object bean;
+        private final Object value;
+        private final PathImpl path;
+
+        private Check(ConstraintValidation constraint, Object bean, Object value,
+                      PathImpl path) {
+            this.constraint = constraint;
+            this.bean = bean;
+            this.value = value;
+            this.path = path;
+        }
+
+        public ConstraintDescriptor<?> getConstraintDescriptor() {
+            return constraint;
+        }
+
+        public Object getValidatedValue() {
+            return value;
+        }
+    }
+
+    DeferredConstraints(MessageInterpolator messageResolver) {
+        this.messageResolver = messageResolver;
+    }
+
+    /** collect the current value of the context to check it for the constraint */
+    void add(ConstraintValidation constraint, GroupValidationContext context) {
+        final BatchConstraintValidator validator =
+              (BatchConstraintValidator) constraint.getValidator();
+        List<Check> list = checks.get(validator);
+        if (list == null) {
+            list = new ArrayList<Check>();
+            checks.put(validator, list);
+            validators.add(validator);
+        }
+        list.add(new Check(constraint, context.getBean(), context.getValidatedValue(),
+              context.getPropertyPath()));
+    }
+
+    boolean isEmpty() {
+        return validators.isEmpty();
+    }
+
+    /**
+     * check the collected values and add the violations to the listener.
+     * Afterwards this instance is empty.
+     */
+    void validate(ConstraintValidationListener listener) {
+        try {
+            for (BatchConstraintValidator validator : validators) {
+                validate(validator, checks.get(validator), listener);
+            }
+        } finally {
+            checks.clear();
+            validators.clear();
+        }
+    }
+
+    private void validate(BatchConstraintValidator validator, List<Check> list,
+                          ConstraintValidationListener listener) {
+        // each distinct value is checked once
+        final Map<Object, Integer> indices = new LinkedHashMap<Object, Integer>();
+        for (Check each : list) {
+            if (!indices.containsKey(each.value)) indices.put(each.value, indices.size());
+        }
+        final boolean[] valid = validator.areValid(new ArrayList<Object>(indices.keySet()));
+        if (valid == null || valid.length != indices.size()) {
+            throw new ValidationException(validator + " returned " +
+                  (valid == null ? "null" : valid.length + " results") + " for " +
+                  indices.size() + " values");
+        }
+        for (Check each : list) {
+            if (!valid[indices.get(each.value)]) {
+                final String template = each.constraint.getMessageTemplate();
+                listener.addConstraintViolation(new ConstraintViolationImpl(template,
+                      messageResolver.interpolate(template, each), listener.getRootBean(),
+                      each.bean, each.path, each.value, each.constraint));
+            }
+        }
+    }
+}
@@ -26,13 +26,13 @@ import com.agimatec.validation.model.MetaBean;
 import com.agimatec.validation.model.MetaProperty;
 import com.agimatec.validation.model.ValidationListener;
 import com.agimatec.validation.util.AccessStrategy;
+import com.agimatec.validation.util.IdentityPairSet;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.MessageInterpolator;
+import javax.validation.Path;
 import javax.validation.TraversableResolver;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Description: instance per validation process, not thread-safe<br/>
@@ -47,7 +47,7 @@ final class GroupValidationContextImpl<T extends ValidationListener>
 
     private final MessageInterpolator messageResolver;
     private final PathImpl path;
-    private final MetaBean rootMetaBean;
+    private MetaBean rootMetaBean;
     /** the groups in the sequence of validation to take place */
     private Groups groups;
     /** the current group during the validation process */
@@ -57,19 +57,171 @@ final class GroupValidationContextImpl<T extends ValidationListener>
      * contains the validation constraints that have already been processed during
      * this validation routine (as part of a previous group match)
      */
-    private IdentityHashMap<Object, IdentityHashMap<ConstraintValidator, Object>> validatedConstraints =
-          new IdentityHashMap();
+    private IdentityPairSet validatedConstraints = new IdentityPairSet();
+    /**
+     * the groups validated so far in this context. The index of a group is
+     * the mark of the validated objects (IdentityMarkSet) for the group.
+     */
+    private Group[] groupIndex = new Group[4];
+    private int groupCount;
     private ConstraintValidation currentConstraint;
     private final TraversableResolver traversableResolver;
+    /** true when this context validates a part of a collection in parallel */
+    private boolean forked;
+    /** the results shared by the validations of a batch or cached, null: none */
+    private BatchValidation batch;
+    /** the values collected for BatchConstraintValidators, null: none so far */
+    private DeferredConstraints deferred;
 
     public GroupValidationContextImpl(T listener, MessageInterpolator aMessageResolver,
                                       TraversableResolver traversableResolver,
                                       MetaBean rootMetaBean) {
+        this(listener, aMessageResolver, traversableResolver, rootMetaBean,
+              PathImpl.create(null));
+    }
+
+    private GroupValidationContextImpl(T listener, MessageInterpolator aMessageResolver,
+                                       TraversableResolver traversableResolver,
+                                       MetaBean rootMetaBean, PathImpl path) {
         super(listener);
         this.messageResolver = aMessageResolver;
         this.traversableResolver = CachingTraversableResolver.cacheFor(traversableResolver);
         this.rootMetaBean = rootMetaBean;
-        this.path = PathImpl.create(null);
+        this.path = path;
+    }
+
+    /**
+     * create a context to validate a part of the current collection in another thread.
+     * It starts with a copy of the current path and of the objects validated so far.
+     *
+     * @param listener            - the listener to collect the violations of the part
+     * @param traversableResolver - the resolver (not the caching one of this context,
+     *                            because it is not thread-safe)
+     * @see #join(GroupValidationContextImpl)
+     */
+    GroupValidationContextImpl<T> fork(T listener, TraversableResolver traversableResolver) {
+        GroupValidationContextImpl<T> context = new GroupValidationContextImpl<T>(listener,
+              messageResolver, traversableResolver, rootMetaBean, PathImpl.copy(path));
+        context.forked = true;
+        context.groups = groups;
+        context.currentGroup = currentGroup;
+        context.setMetaBean(getMetaBean());
+        context.validatedObjects = validatedObjects.copy();
+        context.validatedConstraints = validatedConstraints.copy();
+        context.groupIndex = groupIndex.clone();
+        context.groupCount = groupCount;
+        return context;
+    }
+
+    /**
+     * add the objects and constraints validated in a forked context to this context,
+     * so that they will not be validated again.
+     */
+    void join(GroupValidationContextImpl<T> context) {
+        // the forked context can know more groups than this context
+        final int[] mapping = new int[context.groupCount];
+        for (int i = 0; i < mapping.length; i++) {
+            mapping[i] = indexOf(context.groupIndex[i]);
+        }
+        validatedObjects.addAll(context.validatedObjects, mapping);
+        validatedConstraints.addAll(context.validatedConstraints);
+    }
+
+    /**
+     * reset the complete state of this context, so that it can be reused for
+     * another validation (of the same validator) with a new listener and root metaBean.
+     * The path is reduced to the root node, the validated objects and constraints
+     * and the cache of the traversable resolver are cleared.
+     */
+    void reset(T listener, MetaBean rootMetaBean) {
+        super.reset(listener);
+        this.rootMetaBean = rootMetaBean;
+        groups = null;
+        currentGroup = null;
+        currentConstraint = null;
+        forked = false;
+        batch = null;
+        deferred = null;
+        moveTo(null);
+        if (validatedConstraints.isOversized(MAX_REUSED_SIZE)) {
+            validatedConstraints = new IdentityPairSet();
+        } else {
+            validatedConstraints.clear();
+        }
+        for (int i = 0; i < groupCount; i++) {
+            groupIndex[i] = null;
+        }
+        groupCount = 0;
+        if (traversableResolver instanceof CachingTraversableResolver) {
+            ((CachingTraversableResolver) traversableResolver).clear();
+        }
+    }
+
+    /** @return the objects validated in this context */
+    List<Object> getValidatedObjects() {
+        return validatedObjects.keys();
+    }
+
+    /** @return true when the object has already been validated for the group */
+    boolean isValidated(Object bean, Group group) {
+        return validatedObjects.isMarked(bean, indexOf(group));
+    }
+
+    /** @return true when this context has been created by fork() */
+    boolean isForked() {
+        return forked;
+    }
+
+    /**
+     * collect the current value to check it later together with the other values
+     * of the constraint, see {@link BatchConstraintValidator}.
+     *
+     * @return false when the value cannot be collected and must be checked now
+     */
+    boolean defer(ConstraintValidation constraint) {
+        // the violations of collected values cannot be counted immediately
+        if (!(getListener() instanceof ConstraintValidationListener) ||
+              !((ConstraintValidationListener) getListener()).isCollectViolations()) {
+            return false;
+        }
+        // a batch records the violations of a bean when its validation ends
+        if (batch != null && batch.isRecording()) return false;
+        if (deferred == null) deferred = new DeferredConstraints(messageResolver);
+        deferred.add(constraint, this);
+        return true;
+    }
+
+    /** check the values collected by defer() and report the violations to the listener */
+    void validateDeferred() {
+        if (deferred != null && !deferred.isEmpty()) {
+            deferred.validate((ConstraintValidationListener) getListener());
+        }
+    }
+
+    BatchValidation getBatch() {
+        return batch;
+    }
+
+    /** @param batch - the results of a batch to reuse or null */
+    void setBatch(BatchValidation batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * continue the validation at a bean inside of the object graph
+     *
+     * @param beanPath - the path from the root bean to the bean, null for the root bean
+     */
+    void moveTo(PathImpl beanPath) {
+        while (path.getLeafNode() != null) {
+            path.removeLeafNode();
+        }
+        path.addNode(new NodeImpl((String) null));
+        if (beanPath != null) {
+            for (Path.Node each : beanPath) {
+                path.addNode(new NodeImpl(each));
+            }
+        }
     }
 
     @Override
@@ -103,29 +255,43 @@ final class GroupValidationContextImpl<T extends ValidationListener>
      */
     @Override
     public boolean collectValidated() {
-        Set<Group> groupSet = (Set<Group>) validatedObjects.get(getBean());
-        if (groupSet == null) {
-            groupSet = new HashSet(10);
-            validatedObjects.put(getBean(), groupSet);
+        return !isTrackValidated() || markValidated(getBean(), getCurrentGroup());
+    }
+
+    /** @return true when the object was not already validated in the group */
+    boolean markValidated(Object bean, Group group) {
+        if (batch == null || !batch.isRecording()) {
+            return validatedObjects.mark(bean, indexOf(group));
         }
-        return groupSet.add(getCurrentGroup());
+        final boolean known = validatedObjects.contains(bean);
+        final boolean marked = validatedObjects.mark(bean, indexOf(group));
+        batch.validated(bean, group, known, marked);
+        return marked;
+    }
+
+    /** @return the index of the group in groupIndex, the group is added if required */
+    private int indexOf(Group group) {
+        for (int i = 0; i < groupCount; i++) {
+            if (groupIndex[i] == group || groupIndex[i].equals(group)) return i;
+        }
+        if (groupCount == groupIndex.length) {
+            Group[] newIndex = new Group[groupCount * 2];
+            System.arraycopy(groupIndex, 0, newIndex, 0, groupCount);
+            groupIndex = newIndex;
+        }
+        groupIndex[groupCount] = group;
+        return groupCount++;
     }
 
     /** @return true when the constraint for this object was not already validated in this context */
     public boolean collectValidated(Object bean, ConstraintValidator constraint) {
-        IdentityHashMap<ConstraintValidator, Object> beanConstraints =
-              validatedConstraints.get(bean);
-        if (beanConstraints == null) {
-            beanConstraints = new IdentityHashMap();
-            validatedConstraints.put(bean, beanConstraints);
-        }
-        return beanConstraints.put(constraint, Boolean.TRUE) == null;
+        final boolean added = validatedConstraints.add(bean, constraint);
+        if (batch != null && batch.isRecording()) batch.validated(bean, constraint, added);
+        return added;
     }
 
     public boolean isValidated(Object bean, ConstraintValidator constraint) {
-        IdentityHashMap<ConstraintValidator, Object> beanConstraints =
-              validatedConstraints.get(bean);
-        return beanConstraints != null && beanConstraints.containsKey(constraint);
+        return validatedConstraints.contains(bean, constraint);
     }
 
     public void resetValidatedConstraints() {
@@ -18,6 +18,7 @@
  */
 package com.agimatec.validation.jsr303;
 
+import com.agimatec.validation.MetaBeanCache;
 import com.agimatec.validation.MetaBeanFactory;
 import com.agimatec.validation.jsr303.groups.Group;
 import com.agimatec.validation.jsr303.util.SecureActions;
@@ -26,6 +27,7 @@ import com.agimatec.validation.jsr303.xml.MetaConstraint;
 import com.agimatec.validation.model.Features;
 import com.agimatec.validation.model.MetaBean;
 import com.agimatec.validation.model.MetaProperty;
+import com.agimatec.validation.model.Validation;
 import com.agimatec.validation.util.AccessStrategy;
 import com.agimatec.validation.util.FieldAccess;
 import com.agimatec.validation.util.MethodAccess;
@@ -36,26 +38,51 @@ import org.apache.commons.logging.LogFactory;
 
 import javax.validation.*;
 import javax.validation.groups.Default;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.*;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Description: process the class annotations for JSR303 constraint validations
  * to build the MetaBean with information from annotations and JSR303 constraint
  * mappings (defined in xml)<br/>
+ * The metadata declared by each superclass (and interface) is built once and shared by
+ * the MetaBeans of all its subclasses: their MetaProperties are copies, the
+ * ConstraintValidations are the same instances. It is released together with the
+ * MetaBeans by {@link MetaBeanCache#clear(ClassLoader)}.<br/>
  * User: roman.stumm <br/>
  * Date: 01.04.2008 <br/>
  * Time: 14:12:51 <br/>
  * Copyright: Agimatec GmbH 2008
  */
-public class Jsr303MetaBeanFactory implements MetaBeanFactory {
+public class Jsr303MetaBeanFactory implements MetaBeanFactory, MetaBeanCache.Listener {
     protected static final Log log = LogFactory.getLog(Jsr303MetaBeanFactory.class);
     protected static final String ANNOTATION_VALUE = "value";
     protected final AgimatecFactoryContext factoryContext;
+    /**
+     * the metadata declared by the superclasses and interfaces merged into subclasses,
+     * without the metadata of their superclasses (held softly, it refers to its class
+     * and keeps it alive until collected or removed by {@link #cleared(ClassLoader)})
+     */
+    private final Map<Class<?>, SoftReference<MetaBean>> declaredMetaData =
+          Collections.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<MetaBean>>());
+    /** the class names of the generated providers registered per class loader */
+    private final Map<ClassLoader, Set<String>> providerNames =
+          Collections.synchronizedMap(new WeakHashMap<ClassLoader, Set<String>>());
 
     public Jsr303MetaBeanFactory(AgimatecFactoryContext factoryContext) {
         this.factoryContext = factoryContext;
@@ -79,7 +106,7 @@ public class Jsr303MetaBeanFactory implements MetaBeanFactory {
             final Class<?> beanClass = metabean.getBeanClass();
             processGroupSequence(beanClass, metabean);
             for (Class interfaceClass : beanClass.getInterfaces()) {
-                processClass(interfaceClass, metabean);
+                mergeDeclared(interfaceClass, metabean);
             }
 
             // process class, superclasses and interfaces
@@ -92,9 +119,12 @@ public class Jsr303MetaBeanFactory implements MetaBeanFactory {
             // start with superclasses and go down the hierarchy so that
             // the child classes are processed last to have the chance to overwrite some declarations
             // of their superclasses and that they see what they inherit at the time of processing
-            for (int i = classSequence.size() - 1; i >= 0; i--) {
+            for (int i = classSequence.size() - 1; i > 0; i--) {
                 Class eachClass = classSequence.get(i);
-                processClass(eachClass, metabean);
+                mergeDeclared(eachClass, metabean);
+            }
+            if (!classSequence.isEmpty()) { // not shared: no subclass is known
+                processClass(beanClass, metabean);
             }
         } catch (IllegalAccessException e) {
             throw new IllegalArgumentException(e);
@@ -104,7 +134,123 @@ public class Jsr303MetaBeanFactory implements MetaBeanFactory {
     }
 
     /**
-     * process class annotations, field and method annotations
+     * add the metadata declared by the class to the metabean, with the same
+     * result as {@link #processClass(Class, MetaBean)}: the validations and the
+     * cascades are added to existing properties, the other features are copied
+     * unless the existing property has already set them.
+     */
+    private void mergeDeclared(Class<?> declaringClass, MetaBean metabean)
+          throws IllegalAccessException, InvocationTargetException {
+        final MetaBean declared = getDeclaredMetaData(declaringClass);
+        for (Validation each : declared.getValidations()) {
+            metabean.addValidation(each);
+        }
+        for (MetaProperty each : declared.getProperties()) {
+            final MetaProperty metaProperty = metabean.getProperty(each.getName());
+            if (metaProperty == null) {
+                metabean.putProperty(each.getName(), (MetaProperty) each.copy());
+            } else {
+                for (Validation validation : each.getValidations()) {
+                    metaProperty.addValidation(validation);
+                }
+                for (Map.Entry<String, Object> feature : each.getFeatures().entrySet()) {
+                    if (Features.Property.REF_CASCADE.equals(feature.getKey())) {
+                        for (AccessStrategy access : (AccessStrategy[]) feature.getValue()) {
+                            processValid(metaProperty, access);
+                        }
+                    } else if (metaProperty.getFeature(feature.getKey()) == null) {
+                        metaProperty.putFeature(feature.getKey(), feature.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /** remove the declared metadata of the classes of the loader and its descendants */
+    public void cleared(ClassLoader loader) {
+        synchronized (declaredMetaData) {
+            for (Iterator<Class<?>> it = declaredMetaData.keySet().iterator(); it.hasNext();) {
+                if (MetaBeanCache.isLoadedBy(it.next(), loader)) it.remove();
+            }
+        }
+        providerNames.remove(loader);
+    }
+
+    /**
+     * @return the provider generated for the class (registered in
+     *         META-INF/services of its class loader), null: read all members
+     */
+    private ConstraintMetaDataProvider getProvider(Class<?> beanClass) {
+        final ClassLoader loader = beanClass.getClassLoader();
+        if (loader == null) return null;
+        Set<String> names = providerNames.get(loader);
+        if (names == null) {
+            names = readProviderNames(loader);
+            providerNames.put(loader, names);
+        }
+        final String name = beanClass.getName() + ConstraintMetaDataProvider.CLASS_NAME_SUFFIX;
+        if (!names.contains(name)) return null;
+        try {
+            final ConstraintMetaDataProvider provider = (ConstraintMetaDataProvider)
+                  SecureActions.newInstance(Class.forName(name, true, loader));
+            if (beanClass.getName().equals(provider.getBeanClassName())) return provider;
+        } catch (ClassNotFoundException e) {
+            log.warn("cannot load " + name + ", reading all members of " + beanClass, e);
+        } catch (RuntimeException e) {
+            log.warn("cannot use " + name + ", reading all members of " + beanClass, e);
+        }
+        return null;
+    }
+
+    /** @return the class names listed in the provider configuration files of the loader */
+    private Set<String> readProviderNames(ClassLoader loader) {
+        final String resource =
+              "META-INF/services/" + ConstraintMetaDataProvider.class.getName();
+        final Set<String> names = new HashSet<String>();
+        try {
+            final Enumeration<URL> urls = loader.getResources(resource);
+            while (urls.hasMoreElements()) {
+                final BufferedReader br = new BufferedReader(
+                      new InputStreamReader(urls.nextElement().openStream(), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0 && !line.startsWith("#")) names.add(line);
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } catch (IOException e) { // all members are read
+            log.warn("cannot read " + resource, e);
+        }
+        return names;
+    }
+
+    /** @return true when the member can declare constraints */
+    private static boolean isConstrained(Set<String> constrainedNames, String name) {
+        return constrainedNames == null || constrainedNames.contains(name);
+    }
+
+    /** @return the metadata declared by the class (must not be modified) */
+    private MetaBean getDeclaredMetaData(Class<?> declaringClass)
+          throws IllegalAccessException, InvocationTargetException {
+        final SoftReference<MetaBean> ref = declaredMetaData.get(declaringClass);
+        MetaBean declared = ref == null ? null : ref.get();
+        if (declared == null) {
+            declared = new MetaBean();
+            declared.setBeanClass(declaringClass);
+            processClass(declaringClass, declared);
+            declaredMetaData.put(declaringClass, new SoftReference<MetaBean>(declared));
+        }
+        return declared;
+    }
+
+    /**
+     * process class annotations, field and method annotations.
+     * With a generated {@link ConstraintMetaDataProvider} for the class, only the
+     * annotations of the constrained members are read.
      *
      * @throws IllegalAccessException
      * @throws InvocationTargetException
@@ -116,6 +262,11 @@ public class Jsr303MetaBeanFactory implements MetaBeanFactory {
 
             processAnnotations(null, beanClass, beanClass, null,
                   new AppendValidationToMeta(metabean));
+            final ConstraintMetaDataProvider provider = getProvider(beanClass);
+            final Set<String> constrainedFields = provider == null ? null :
+                  new HashSet<String>(Arrays.asList(provider.getConstrainedFields()));
+            final Set<String> constrainedMethods = provider == null ? null :
+                  new HashSet<String>(Arrays.asList(provider.getConstrainedMethods()));
 
             Field[] fields = beanClass.getDeclaredFields();
             for (Field field : fields) {
@@ -126,12 +277,14 @@ public class Jsr303MetaBeanFactory implements MetaBeanFactory {
                     if (metaProperty == null) {
                         metaProperty = createMetaProperty(field.getName(), field.getType());
                         /*if (*/
-                        processAnnotations(metaProperty, beanClass, field,
-                              new FieldAccess(field),
-                              new AppendValidationToMeta(metaProperty));//) {
+                        if (isConstrained(constrainedFields, field.getName())) {
+                            processAnnotations(metaProperty, beanClass, field,
+                                  new FieldAccess(field),
+                                  new AppendValidationToMeta(metaProperty));//) {
+                        }
                         metabean.putProperty(metaProperty.getName(), metaProperty);
                         //}
-                    } else {
+                    } else if (isConstrained(constrainedFields, field.getName())) {
                         processAnnotations(metaProperty, beanClass, field,
                               new FieldAccess(field),
                               new AppendValidationToMeta(metaProperty));
@@ -154,12 +307,14 @@ public class Jsr303MetaBeanFactory implements MetaBeanFactory {
                             metaProperty =
                                   createMetaProperty(propName, method.getReturnType());
                             /*if (*/
-                            processAnnotations(metaProperty, beanClass, method,
-                                  new MethodAccess(propName, method),
-                                  new AppendValidationToMeta(metaProperty));//) {
+                            if (isConstrained(constrainedMethods, method.getName())) {
+                                processAnnotations(metaProperty, beanClass, method,
+                                      new MethodAccess(propName, method),
+                                      new AppendValidationToMeta(metaProperty));//) {
+                            }
                             metabean.putProperty(propName, metaProperty);
                             //}
-                        } else {
+                        } else if (isConstrained(constrainedMethods, method.getName())) {
                             processAnnotations(metaProperty, beanClass, method,
                                   new MethodAccess(propName, method),
                                   new AppendValidationToMeta(metaProperty));
@@ -40,6 +40,9 @@ final class NestedMetaProperty {
     private final String propertyPath;
     private boolean nested;
     private Object value;
+    /** the bean and metaBean the last property belongs to */
+    private Object owner;
+    private MetaBean ownerMetaBean;
 
     public NestedMetaProperty(String path, Object value) {
         this.propertyPath = path;
@@ -67,6 +70,8 @@ final class NestedMetaProperty {
                         throw new ValidationException(
                                 "unknown property '" + token + "' in " + getMetaBean().getId());
                     }
+                    owner = getValue();
+                    ownerMetaBean = getMetaBean();
                     if (getValue() != null) {
                         setValue(
                               PropertyAccess.getProperty(getValue(), token));
@@ -96,6 +101,16 @@ final class NestedMetaProperty {
         return nested;
     }
 
+    /** @return the bean with the (last) property of the path, null when not reachable */
+    public Object getOwner() {
+        return owner;
+    }
+
+    /** @return the metaBean of the bean with the (last) property of the path */
+    public MetaBean getOwnerMetaBean() {
+        return ownerMetaBean;
+    }
+
     public void setMetaProperty(MetaProperty aMetaProperty) {
         if (this.metaProperty != null) {
             this.nested = true;
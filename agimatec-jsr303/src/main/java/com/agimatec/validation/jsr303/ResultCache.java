@@ -0,0 +1,138 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+import com.agimatec.validation.jsr303.groups.Group;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Description: the validation results of immutable beans (see
+ * {@link com.agimatec.validation.model.Features.Bean#IMMUTABLE}) per bean and group,
+ * to reuse them when an equal bean is validated again.
+ * The beans are held weakly, the least recently used results are removed when
+ * the cache is full. The results depend on the MessageInterpolator and the
+ * TraversableResolver, so a cache must only be shared by validators with the same
+ * configuration (the factory creates a new cache when its configuration changes).
+ * Only results that refer to no other objects than the bean itself are kept.<br/>
+ * this instance is thread-safe.<br/>
+ * Copyright: Agimatec GmbH
+ */
+public final class ResultCache {
+    private final int maxSize;
+    private final Map<Key, BatchValidation.Result> results;
+    /** the keys whose beans have been garbage collected */
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+    private long hitCount;
+    private long missCount;
+
+    /** a bean (held weakly) and a group */
+    private static final class Key extends WeakReference<Object> {
+        private final Group group;
+        private final int hash;
+
+        private Key(Object bean, Group group, ReferenceQueue<Object> queue) {
+            super(bean, queue);
+            this.group = group;
+            this.hash = bean.hashCode() * 31 + group.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            if (hash != key.hash || !group.equals(key.group)) return false;
+            final Object bean = get();
+            return bean != null && bean.equals(key.get());
+        }
+    }
+
+    /** @param maxSize - max. number of results (bean and group) to keep */
+    public ResultCache(final int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+        this.results = new LinkedHashMap<Key, BatchValidation.Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** @return the result of a bean equal to bean in the group, or null */
+    synchronized BatchValidation.Result get(Object bean, Group group) {
+        purge();
+        final BatchValidation.Result result = results.get(new Key(bean, group, null));
+        if (result == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return result;
+    }
+
+    synchronized void put(Object bean, BatchValidation.Result result) {
+        purge();
+        results.put(new Key(bean, result.getGroup(), collected), result);
+    }
+
+    /** remove the results of the beans that have been garbage collected */
+    private void purge() {
+        Reference<?> each;
+        while ((each = collected.poll()) != null) {
+            results.remove(each);
+        }
+    }
+
+    /** @return number of requests that found a result */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /** @return number of requests that found no result */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /** @return number of results kept */
+    public synchronized int size() {
+        purge();
+        return results.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** remove all results and reset the counters */
+    public synchronized void clear() {
+        purge();
+        results.clear();
+        hitCount = 0;
+        missCount = 0;
+    }
+}
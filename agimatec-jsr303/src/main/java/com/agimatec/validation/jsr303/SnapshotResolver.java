@@ -0,0 +1,53 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+import com.agimatec.validation.MetaBeanSnapshot;
+
+import javax.validation.ConstraintValidatorFactory;
+import javax.validation.ValidationException;
+import java.io.InvalidObjectException;
+
+/**
+ * Description: writes the MetaBeans of a metadata snapshot without their
+ * cached descriptors (they are created again when required) and
+ * creates the ConstraintValidators of the ConstraintValidations read
+ * with the ConstraintValidatorFactory of the factory reading the snapshot.<br/>
+ * Copyright: Agimatec GmbH
+ */
+class SnapshotResolver implements MetaBeanSnapshot.ObjectResolver {
+    private final ConstraintValidatorFactory constraintValidatorFactory;
+
+    SnapshotResolver(ConstraintValidatorFactory constraintValidatorFactory) {
+        this.constraintValidatorFactory = constraintValidatorFactory;
+    }
+
+    public Object replaceObject(Object obj) {
+        return obj instanceof ElementDescriptorImpl ? null : obj;
+    }
+
+    public Object resolveObject(Object obj) throws InvalidObjectException {
+        if (obj instanceof ConstraintValidation) {
+            try {
+                ((ConstraintValidation<?>) obj).initValidator(constraintValidatorFactory);
+            } catch (ValidationException e) { // the MetaBean will be built again
+                throw new InvalidObjectException(e.getMessage());
+            }
+        }
+        return obj;
+    }
+}
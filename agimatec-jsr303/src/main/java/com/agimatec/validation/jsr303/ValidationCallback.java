@@ -0,0 +1,36 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303;
+
+import javax.validation.ConstraintViolation;
+import java.util.Set;
+
+/**
+ * Description: receives the violations of each invalid object, when a sequence
+ * of objects is validated one after another, see
+ * {@link ClassValidator#validateEach(java.util.Iterator, ValidationCallback, Class[])}<br/>
+ * Copyright: Agimatec GmbH
+ */
+public interface ValidationCallback<T> {
+    /**
+     * @param object     - the invalid object
+     * @param index      - the position of the object in the sequence, starting at 0
+     * @param violations - the violations of the object (not empty)
+     * @return true to continue with the next object, false to stop the validation
+     */
+    boolean invalid(T object, int index, Set<ConstraintViolation<T>> violations);
+}
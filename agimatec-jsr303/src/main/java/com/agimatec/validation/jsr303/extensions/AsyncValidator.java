@@ -0,0 +1,60 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303.extensions;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Description: extension to validate objects asynchronously, e.g. to keep the
+ * validation of large object graphs away from threads that must not block.
+ * The validation runs on an executor supplied by the caller. Cancelling the Future
+ * stops the validation before the next bean is validated.<br/>
+ * You can access the extension via the use of the Validator.unwrap() method.<br/>
+ * Copyright: Agimatec GmbH
+ */
+public interface AsyncValidator extends Validator {
+    /** notified when an asynchronous validation has finished (and was not cancelled) */
+    interface Completion<T> {
+        /** @param violations - the result of the validation */
+        void completed(Set<ConstraintViolation<T>> violations);
+
+        /** @param error - the error that stopped the validation */
+        void failed(Throwable error);
+    }
+
+    /**
+     * validate all constraints on object in a task executed by the executor
+     *
+     * @return the Future of the violations
+     */
+    <T> Future<Set<ConstraintViolation<T>>> validateAsync(Executor executor, T object,
+                                                          Class<?>... groups);
+
+    /**
+     * validate all constraints on object in a task executed by the executor
+     *
+     * @param completion - notified in the thread of the task, when the validation has finished
+     * @return the Future of the violations
+     */
+    <T> Future<Set<ConstraintViolation<T>>> validateAsync(Executor executor, T object,
+                                                          Completion<T> completion,
+                                                          Class<?>... groups);
+}
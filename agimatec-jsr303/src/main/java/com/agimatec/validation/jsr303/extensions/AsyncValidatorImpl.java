@@ -0,0 +1,103 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303.extensions;
+
+import com.agimatec.validation.jsr303.AgimatecFactoryContext;
+import com.agimatec.validation.jsr303.ClassValidator;
+import com.agimatec.validation.model.ValidationContext;
+
+import javax.validation.ConstraintViolation;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Description: implementation of the asynchronous validation. The task of a
+ * validation is known to the thread executing it, so that the validation can
+ * check for cancellation between the beans.<br/>
+ * Copyright: Agimatec GmbH
+ */
+class AsyncValidatorImpl extends ClassValidator implements AsyncValidator {
+    /** the task of the validation running in the current thread */
+    private final ThreadLocal<Future<?>> currentTask = new ThreadLocal<Future<?>>();
+
+    public AsyncValidatorImpl(AgimatecFactoryContext factoryContext) {
+        super(factoryContext);
+    }
+
+    public <T> Future<Set<ConstraintViolation<T>>> validateAsync(Executor executor, T object,
+                                                                 Class<?>... groups) {
+        return validateAsync(executor, object, null, groups);
+    }
+
+    public <T> Future<Set<ConstraintViolation<T>>> validateAsync(Executor executor,
+                                                                 final T object,
+                                                                 Completion<T> completion,
+                                                                 final Class<?>... groups) {
+        if (object == null) throw new IllegalArgumentException("cannot validate null");
+        final ValidationTask<T> task =
+              new ValidationTask<T>(new Callable<Set<ConstraintViolation<T>>>() {
+                  public Set<ConstraintViolation<T>> call() {
+                      return validate(object, groups);
+                  }
+              }, completion);
+        executor.execute(task);
+        return task;
+    }
+
+    @Override
+    protected boolean isCompleted(ValidationContext context) {
+        if (super.isCompleted(context)) return true;
+        final Future<?> task = currentTask.get();
+        return task != null && task.isCancelled();
+    }
+
+    private final class ValidationTask<T> extends FutureTask<Set<ConstraintViolation<T>>> {
+        private final Completion<T> completion;
+
+        private ValidationTask(Callable<Set<ConstraintViolation<T>>> callable,
+                               Completion<T> completion) {
+            super(callable);
+            this.completion = completion;
+        }
+
+        @Override
+        public void run() {
+            currentTask.set(this);
+            try {
+                super.run();
+            } finally {
+                currentTask.remove();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (completion == null || isCancelled()) return;
+            try {
+                completion.completed(get());
+            } catch (ExecutionException e) {
+                completion.failed(e.getCause());
+            } catch (InterruptedException e) { // cannot happen, the task is done
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
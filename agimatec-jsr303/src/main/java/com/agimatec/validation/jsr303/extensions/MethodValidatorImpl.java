@@ -22,6 +22,7 @@ import com.agimatec.validation.jsr303.groups.Groups;
 import com.agimatec.validation.model.MetaBean;
 
 import javax.validation.ConstraintViolation;
+import javax.validation.metadata.BeanDescriptor;
 import javax.validation.metadata.ConstraintDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -52,6 +53,18 @@ class MethodValidatorImpl extends ClassValidator implements MethodValidator {
         return descriptor;
     }
 
+    @Override
+    public BeanDescriptor getConstraintsForClass(Class<?> clazz) {
+        BeanDescriptor descriptor = super.getConstraintsForClass(clazz);
+        if (!(descriptor instanceof MethodBeanDescriptorImpl)) {
+            // created by a ClassValidator that shares the metadata: replace it
+            MetaBean metaBean = ((BeanDescriptorImpl) descriptor).getMetaBean();
+            descriptor = createBeanDescriptor(metaBean);
+            metaBean.putFeature(Jsr303Features.Bean.BEAN_DESCRIPTOR, descriptor);
+        }
+        return descriptor;
+    }
+
     /**
      * enhancement: method-level-validation not yet completly implemented
      * <pre>example:
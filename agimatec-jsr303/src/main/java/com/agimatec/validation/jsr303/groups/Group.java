@@ -19,12 +19,13 @@
 package com.agimatec.validation.jsr303.groups;
 
 import javax.validation.groups.Default;
+import java.io.Serializable;
 
 /**
  * immutable object -
  * wrap an interface that represents a single group.
  */
-public class Group {
+public class Group implements Serializable {
     /**
      * the Default Group
      */
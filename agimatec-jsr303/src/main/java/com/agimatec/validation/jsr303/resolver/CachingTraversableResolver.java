@@ -91,6 +91,11 @@ public class CachingTraversableResolver implements TraversableResolver, CachingR
         return cachedLH.cascadable;
     }
 
+    /** forget all cached results, e.g. to reuse this instance for the next validate* call */
+    public void clear() {
+        cache.clear();
+    }
+
     public boolean needsCaching() {
         return false;  // I am the cache. Do not need cache for cache
     }
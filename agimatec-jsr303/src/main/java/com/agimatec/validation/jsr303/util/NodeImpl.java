@@ -43,7 +43,7 @@ public final class NodeImpl implements Path.Node, Serializable {
         this.name = name;
     }
 
-    NodeImpl(Path.Node node) {
+    public NodeImpl(Path.Node node) {
         this.name = node.getName();
         this.isInIterable = node.isInIterable();
         this.index = node.getIndex();
@@ -18,6 +18,7 @@ package com.agimatec.validation.jsr303.xml;
 
 import com.agimatec.validation.jsr303.util.SecureActions;
 
+import java.io.Serializable;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
@@ -38,7 +39,7 @@ import java.util.TreeSet;
  * Time: 14:31:26 <br/>
  * Copyright: Agimatec GmbH
  */
-public class AnnotationProxy implements Annotation, InvocationHandler {
+public class AnnotationProxy implements Annotation, InvocationHandler, Serializable {
 
     private final Class<? extends Annotation> annotationType;
     private final Map<String, Object> values;
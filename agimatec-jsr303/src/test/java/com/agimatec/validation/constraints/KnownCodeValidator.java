@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.agimatec.validation.constraints;
+
+import com.agimatec.validation.jsr303.BatchConstraintValidator;
+
+import javax.validation.ConstraintValidatorContext;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Description: checks codes against an in-memory stand-in for a store,
+ * counting the calls (= round trips to the store) <br/>
+ * Copyright: Agimatec GmbH
+ */
+public class KnownCodeValidator implements BatchConstraintValidator<KnownCode, String> {
+    public static final Set<String> STORE = new HashSet<String>(Arrays.asList("A", "B", "C"));
+    public static int calls;
+
+    public void initialize(KnownCode constraintAnnotation) {
+    }
+
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        calls++;
+        return value == null || STORE.contains(value);
+    }
+
+    public boolean[] areValid(List<String> values) {
+        calls++;
+        boolean[] valid = new boolean[values.size()];
+        for (int i = 0; i < valid.length; i++) {
+            valid[i] = values.get(i) == null || STORE.contains(values.get(i));
+        }
+        return valid;
+    }
+}
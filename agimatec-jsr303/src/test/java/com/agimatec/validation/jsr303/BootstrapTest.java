@@ -19,17 +19,26 @@
 package com.agimatec.validation.jsr303;
 
 import com.agimatec.validation.constraints.NotNullValidator;
+import com.agimatec.validation.jsr303.example.Address;
+import com.agimatec.validation.jsr303.example.Author;
+import com.agimatec.validation.jsr303.example.Book;
 import com.agimatec.validation.jsr303.example.Customer;
+import com.agimatec.validation.model.MetaBean;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
 import javax.validation.*;
 import javax.validation.bootstrap.ProviderSpecificBootstrap;
 import javax.validation.spi.ValidationProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Description: <br/>
@@ -112,6 +121,110 @@ public class BootstrapTest extends TestCase {
                 ConstraintViolations.size() > ConstraintViolations2.size());
     }
 
+    public void testValidatorsShareMetaData() {
+        AgimatecValidatorFactory factory =
+                (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        ClassValidator validator1 = (ClassValidator) factory.getValidator();
+        ClassValidator validator2 = (ClassValidator) factory.usingContext()
+                .messageInterpolator(new DefaultMessageInterpolator()).getValidator();
+        Assert.assertTrue(validator1.getMetaBeanFinder() == factory.getMetaBeanManager());
+        Assert.assertTrue(validator2.getMetaBeanFinder() == factory.getMetaBeanManager());
+        Assert.assertTrue(validator1.getMetaBeanFinder().findForClass(Customer.class) ==
+                validator2.getMetaBeanFinder().findForClass(Customer.class));
+
+        // the validator instances depend on the ConstraintValidatorFactory
+        ClassValidator validator3 = (ClassValidator) factory.usingContext()
+                .constraintValidatorFactory(new DefaultConstraintValidatorFactory())
+                .getValidator();
+        Assert.assertTrue(validator3.getMetaBeanFinder() != factory.getMetaBeanManager());
+    }
+
+    public void testPrewarm() {
+        AgimatecValidatorFactory factory =
+                (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        Map<Class<?>, Long> durations =
+                factory.prewarm("com.agimatec.validation.jsr303.example.");
+        Assert.assertEquals(Arrays.asList(Customer.class, Address.class, Book.class),
+                new ArrayList<Class<?>>(durations.keySet()));
+        for (Long each : durations.values()) {
+            Assert.assertTrue(each >= 0);
+        }
+        MetaBean metaBean = factory.getMetaBeanManager().getCache().findForClass(Book.class);
+        Assert.assertNotNull(metaBean);
+        Assert.assertNotNull(metaBean.getFeature(Jsr303Features.Bean.BEAN_DESCRIPTOR));
+
+        Assert.assertEquals(1, factory.prewarm(Author.class).size());
+        // duplicates are processed once
+        Assert.assertEquals(Arrays.asList(Book.class, Author.class), new ArrayList<Class<?>>(
+                factory.prewarm(Book.class, Author.class, Book.class).keySet()));
+        Assert.assertNotNull(factory.getMetaBeanManager().getCache().findForClass(Author.class));
+    }
+
+    public void testMetaDataSnapshot() throws Exception {
+        AgimatecValidatorFactory factory =
+                (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        factory.prewarm(Book.class, Author.class, Address.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = factory.writeMetaData(out);
+        Assert.assertTrue(written >= 3);
+
+        AgimatecValidatorFactory other =
+                (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        Assert.assertEquals(written,
+                other.readMetaData(new ByteArrayInputStream(out.toByteArray())));
+        // read when required
+        Assert.assertNull(other.getMetaBeanManager().getCache().findForClass(Book.class));
+        MetaBean metaBean = other.getMetaBeanManager().findForClass(Book.class);
+        Assert.assertNotNull(metaBean);
+        Assert.assertSame(metaBean,
+                other.getMetaBeanManager().getCache().findForClass(Book.class));
+
+        Author author = new Author();
+        author.setCompany("a company name that is much too long for the constraint");
+        Book book = new Book();
+        book.setTitle("a title");
+        book.setSubtitle("a subtitle that is much too long for the constraint");
+        book.setAuthor(author);
+        Assert.assertEquals(describe(factory.getValidator().validate(book)),
+                describe(other.getValidator().validate(book)));
+        Assert.assertEquals(describe(factory.getValidator().validate(author)),
+                describe(other.getValidator().validate(author)));
+        Assert.assertSame(metaBean,
+                other.getMetaBeanManager().getCache().findForClass(Book.class));
+
+        // another configuration does not read the snapshot
+        other = (AgimatecValidatorFactory) Validation.byProvider(
+                AgimatecValidationProvider.class).configure()
+                .addProperty(AgimatecValidatorConfiguration.Properties.MAX_VIOLATIONS, "1")
+                .buildValidatorFactory();
+        Assert.assertEquals(0,
+                other.readMetaData(new ByteArrayInputStream(out.toByteArray())));
+        // neither do other constraint mappings
+        other = (AgimatecValidatorFactory) Validation.byProvider(
+                AgimatecValidationProvider.class).configure()
+                .addMapping(getClass().getResourceAsStream("/sample-constraints.xml"))
+                .buildValidatorFactory();
+        Assert.assertEquals(0,
+                other.readMetaData(new ByteArrayInputStream(out.toByteArray())));
+        // nor another ConstraintValidatorFactory class
+        other = (AgimatecValidatorFactory) Validation.byProvider(
+                AgimatecValidationProvider.class).configure()
+                .constraintValidatorFactory(new DefaultConstraintValidatorFactory() {
+                })
+                .buildValidatorFactory();
+        Assert.assertEquals(0,
+                other.readMetaData(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    private Set<String> describe(Set<? extends ConstraintViolation<?>> violations) {
+        Set<String> descriptions = new TreeSet<String>();
+        for (ConstraintViolation<?> each : violations) {
+            descriptions.add(each.getPropertyPath() + ": " + each.getMessage());
+        }
+        Assert.assertFalse(descriptions.isEmpty());
+        return descriptions;
+    }
+
     public void testCustomResolverAndType() {
         ValidationProviderResolver resolver = new ValidationProviderResolver() {
 
@@ -18,13 +18,22 @@
  */
 package com.agimatec.validation.jsr303;
 
+import com.agimatec.validation.MetaBeanCache;
+import com.agimatec.validation.constraints.KnownCode;
+import com.agimatec.validation.constraints.KnownCodeValidator;
 import com.agimatec.validation.constraints.NotNullValidator;
 import com.agimatec.validation.jsr303.example.*;
 import com.agimatec.validation.jsr303.util.TestUtils;
+import com.agimatec.validation.model.Features;
+import com.agimatec.validation.model.MetaBean;
+import com.agimatec.validation.model.MetaProperty;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
 import javax.validation.ConstraintViolation;
+import javax.validation.GroupSequence;
+import javax.validation.Valid;
+import javax.validation.Validation;
 import javax.validation.Validator;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -34,8 +43,12 @@ import javax.validation.metadata.ConstraintDescriptor;
 import javax.validation.metadata.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Description: <br/>
@@ -156,6 +169,123 @@ public class ValidationTest extends TestCase {
         Assert.assertEquals("addresses[0].country.name", ic.getPropertyPath().toString());
     }
 
+    /**
+     * test:
+     * - the constraints inherited from a superclass are the same instances
+     *   for all its subclasses, until the cache is cleared for their class loader
+     */
+    public void testInheritedConstraintsShared() {
+        AgimatecValidatorFactory factory =
+                (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        MetaBeanCache cache = factory.getMetaBeanManager().getCache();
+        MetaBean customer = factory.getMetaBeanManager().findForClass(Customer.class);
+        MetaBean guest = factory.getMetaBeanManager().findForClass(PreferredGuest.class);
+        MetaProperty guestCustomerId = guest.getProperty("customerId");
+        Assert.assertNotSame(customer.getProperty("customerId"), guestCustomerId);
+        Assert.assertEquals(1, guestCustomerId.getValidations().length);
+        Assert.assertNull(customer.getProperty("guestCreditCardNumber"));
+        Assert.assertEquals(1,
+                guest.getProperty("guestCreditCardNumber").getValidations().length);
+
+        cache.removeFromCache(guest);
+        MetaBean other = factory.getMetaBeanManager().findForClass(PreferredGuest.class);
+        Assert.assertNotSame(guest, other);
+        Assert.assertSame(guestCustomerId.getValidations()[0],
+                other.getProperty("customerId").getValidations()[0]);
+
+        cache.clear(PreferredGuest.class.getClassLoader());
+        other = factory.getMetaBeanManager().findForClass(PreferredGuest.class);
+        Assert.assertNotSame(guestCustomerId.getValidations()[0],
+                other.getProperty("customerId").getValidations()[0]);
+
+        PreferredGuest preferredGuest = new PreferredGuest();
+        preferredGuest.setGuestCreditCardNumber("12.5");
+        Set<ConstraintViolation<PreferredGuest>> violations =
+                factory.getValidator().validate(preferredGuest);
+        Set<String> paths = new TreeSet<String>();
+        for (ConstraintViolation<PreferredGuest> each : violations) {
+            paths.add(each.getPropertyPath().toString());
+        }
+        Assert.assertTrue(paths.contains("customerId"));
+        Assert.assertTrue(paths.contains("guestCreditCardNumber"));
+    }
+
+    public interface Motorized {
+        @NotNull
+        List<Engine> getEngines();
+    }
+
+    public static class Vehicle {
+        private List<Engine> engines;
+
+        @Valid
+        @Size(max = 2)
+        public List<Engine> getEngines() {
+            return engines;
+        }
+    }
+
+    /** the getter declared by the interface, overridden by the superclass */
+    public static class Car extends Vehicle implements Motorized {
+    }
+
+    /**
+     * test:
+     * - the declared metadata of a superclass merged into a property that already
+     *   exists has the same result as processing the superclass itself
+     */
+    public void testMergeDeclaredIntoExistingProperty() {
+        AgimatecValidatorFactory factory =
+                (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        MetaProperty vehicleEngine = factory.getMetaBeanManager()
+                .findForClass(Vehicle.class).getProperty("engines");
+        MetaProperty carEngine = factory.getMetaBeanManager()
+                .findForClass(Car.class).getProperty("engines");
+        Assert.assertEquals(vehicleEngine.getValidations().length + 1,
+                carEngine.getValidations().length);
+        Assert.assertTrue(carEngine.getFeatures().keySet()
+                .containsAll(vehicleEngine.getFeatures().keySet()));
+        Assert.assertEquals(
+                ((Object[]) vehicleEngine.getFeature(Features.Property.REF_CASCADE)).length,
+                ((Object[]) carEngine.getFeature(Features.Property.REF_CASCADE)).length);
+
+        Car car = new Car();
+        Set<ConstraintViolation<Car>> violations = factory.getValidator().validate(car);
+        Assert.assertEquals(1, violations.size());
+        assertPropertyPath("engines", violations);
+    }
+
+    public void testMaxViolationsAndIsValid() {
+        Author a = new Author();
+        a.setAddresses(new ArrayList());
+        BusinessAddress adr = new BusinessAddress();
+        adr.setCountry(new Country());
+        adr.setAddressline1("line1");
+        adr.setAddressline2("line2");
+        adr.setZipCode("1234567890123456789");
+        a.getAddresses().add(adr);
+        a.setFirstName("Karl");
+        a.setLastName("May");
+
+        Validator v = Validation.byProvider(AgimatecValidationProvider.class).configure()
+              .addProperty(AgimatecValidatorConfiguration.Properties.MAX_VIOLATIONS, "2")
+              .buildValidatorFactory().getValidator();
+        Set found = v.validate(a, Default.class, First.class, Last.class);
+        Assert.assertEquals(2, found.size());
+
+        ClassValidator failFast = getValidator().unwrap(ClassValidator.class);
+        failFast.setMaxViolations(1);
+        Assert.assertEquals(1, failFast.validate(a, Default.class, First.class, Last.class).size());
+        Assert.assertFalse(failFast.isValid(a, Default.class, First.class, Last.class));
+
+        adr.setCity("Berlin");
+        adr.setZipCode("12345");
+        adr.setCompany("agimatec GmbH");
+        adr.getCountry().setName("Germany");
+        Assert.assertTrue(failFast.isValid(a, Default.class, First.class, Last.class));
+        Assert.assertTrue(v.validate(a, Default.class, First.class, Last.class).isEmpty());
+    }
+
     public void testPropertyPathWithIndex() {
         Author a = new Author();
         a.setAddresses(new ArrayList());
@@ -180,6 +310,346 @@ public class ValidationTest extends TestCase {
         assertPropertyPath("addresses[2].country", constraints);
     }
 
+    public void testValidatorReuse() {
+        Validator validator = getValidator();
+        RecursiveFoo foo1 = new RecursiveFoo();
+        RecursiveFoo foo11 = new RecursiveFoo();
+        foo1.getFoos().add(foo11);
+        Set<ConstraintViolation<RecursiveFoo>> constraints = validator.validate(foo1);
+        assertPropertyPath("foos[0].foos", constraints);
+        int count = constraints.size();
+
+        Author author = new Author();
+        author.setFirstName("Karl");
+        author.setLastName("May");
+        Assert.assertTrue(validator.validate(author).isEmpty());
+        Assert.assertEquals(0, validator.validateProperty(foo1, "foos").size());
+        Assert.assertEquals(1, validator.validateProperty(foo11, "foos").size());
+        Assert.assertEquals(1, validator.validateValue(Author.class, "firstName", "").size());
+
+        // the same object again: nothing must be left from the previous validations
+        constraints = validator.validate(foo1);
+        Assert.assertEquals(count, constraints.size());
+        assertPropertyPath("foos[0].foos", constraints);
+    }
+
+    public void testConstraintMetaDataProvider() {
+        // the provider of Voucher names the field "code" only
+        Set<ConstraintViolation<Voucher>> violations = getValidator().validate(new Voucher());
+        assertEquals(1, violations.size());
+        assertPropertyPath("code", violations);
+    }
+
+    /** a validator that counts the contexts it creates */
+    private static class CountingValidator extends ClassValidator {
+        private final int[] created;
+
+        CountingValidator(AgimatecFactoryContext factoryContext, int[] created) {
+            super(factoryContext);
+            this.created = created;
+        }
+
+        @Override
+        protected <T> GroupValidationContext<ConstraintValidationListener<T>> createContext(
+              MetaBean metaBean, T object, Class<?>[] groups,
+              ConstraintValidationListener<T> listener) {
+            created[0]++;
+            return super.createContext(metaBean, object, groups, listener);
+        }
+    }
+
+    public void testContextPool() {
+        AgimatecValidatorFactory factory =
+              (AgimatecValidatorFactory) Validation.buildDefaultValidatorFactory();
+        Author author = new Author();
+        author.setFirstName("Karl");
+        author.setLastName("May");
+        int[] created = new int[1];
+        Validator validator = new CountingValidator(factory.usingContext(), created);
+        Assert.assertTrue(validator.validate(author).isEmpty());
+        Assert.assertTrue(validator.validate(author).isEmpty());
+        Assert.assertEquals(1, created[0]);
+        // validators created per request reuse the contexts of each other
+        validator = new CountingValidator(factory.usingContext(), created);
+        Assert.assertTrue(validator.validate(author).isEmpty());
+        Assert.assertEquals(1, validator.validateValue(Author.class, "firstName", "").size());
+        Assert.assertEquals(1, created[0]);
+
+        // the contexts of other validator classes are not reused
+        Assert.assertTrue(factory.getValidator().validate(author).isEmpty());
+        Assert.assertTrue(validator.validate(author).isEmpty());
+        Assert.assertEquals(2, created[0]);
+        // nor the contexts of another configuration
+        validator = new CountingValidator((AgimatecFactoryContext) factory.usingContext()
+              .messageInterpolator(new DefaultMessageInterpolator()), created);
+        Assert.assertTrue(validator.validate(author).isEmpty());
+        Assert.assertEquals(3, created[0]);
+    }
+
+    public void testValidateAll() {
+        Validator validator = getValidator();
+        ClassValidator batchValidator = validator.unwrap(ClassValidator.class);
+        Address address = new Address();
+        Author author = new Author();
+        author.setFirstName("Karl");
+        author.setLastName("May");
+        author.setAddresses(new ArrayList<Address>());
+        author.getAddresses().add(address);
+        List<Book> books = new ArrayList<Book>();
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.setTitle("Book " + i);
+            book.setAuthor(author);
+            books.add(book);
+        }
+        List<Set<ConstraintViolation<Book>>> result = batchValidator.validateAll(books);
+        assertEquals(books.size(), result.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertViolations(validator.validate(books.get(i)), result.get(i));
+            for (ConstraintViolation<Book> each : result.get(i)) {
+                assertSame(books.get(i), each.getRootBean());
+            }
+        }
+        assertPropertyPath("author.addresses[0].country", result.get(2));
+
+        // a root object that is related bean of another root object, with a cycle
+        RecursiveFoo foo1 = new RecursiveFoo();
+        RecursiveFoo foo11 = new RecursiveFoo();
+        foo1.getFoos().add(foo11);
+        foo11.getFoos().add(foo1);
+        List<RecursiveFoo> foos = new ArrayList<RecursiveFoo>();
+        foos.add(foo1);
+        foos.add(foo11);
+        foos.add(new RecursiveFoo());
+        List<Set<ConstraintViolation<RecursiveFoo>>> fooResult = batchValidator.validateAll(foos);
+        for (int i = 0; i < foos.size(); i++) {
+            assertViolations(validator.validate(foos.get(i)), fooResult.get(i));
+        }
+    }
+
+    public void testResultCache() {
+        AgimatecValidatorFactory factory = (AgimatecValidatorFactory) Validation
+              .byProvider(AgimatecValidationProvider.class).configure()
+              .addProperty(AgimatecValidatorConfiguration.Properties.RESULT_CACHE_SIZE, "10")
+              .buildValidatorFactory();
+        factory.getMetaBeanManager().findForClass(Country.class)
+              .putFeature(Features.Bean.IMMUTABLE, Boolean.TRUE);
+        Validator validator = factory.getValidator();
+        ResultCache cache = factory.getResultCache();
+        assertSame(cache, validator.unwrap(ClassValidator.class).getResultCache());
+
+        Country country = new Country();
+        country.setISO2Code("DEU");
+        List<Author> authors = new ArrayList<Author>();
+        for (int i = 0; i < 2; i++) {
+            Address address = new Address();
+            address.setCountry(country);
+            Author author = new Author();
+            author.setFirstName("Karl");
+            author.setLastName("May");
+            author.setAddresses(new ArrayList<Address>());
+            author.getAddresses().add(address);
+            authors.add(author);
+        }
+        Set<ConstraintViolation<Author>> first = validator.validate(authors.get(0));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHitCount());
+        Set<ConstraintViolation<Author>> second = validator.validate(authors.get(1));
+        assertEquals(1, cache.getHitCount());
+        assertViolations(first, second);
+        assertViolations(getValidator().validate(authors.get(1)), second);
+        assertPropertyPath("addresses[0].country.name", second);
+        for (ConstraintViolation<Author> each : second) {
+            assertSame(authors.get(1), each.getRootBean());
+        }
+        // the immutable bean as root object, validated in group Default only
+        validator.validate(country);
+        assertEquals(1, cache.getHitCount());
+        Set<ConstraintViolation<Country>> violations = validator.validate(country);
+        assertEquals(2, cache.getHitCount());
+        assertViolations(getValidator().validate(country), violations);
+        assertPropertyPath("ISO2Code", violations);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+
+        // the result of an address refers to its country: not kept for equal addresses
+        factory.getMetaBeanManager().findForClass(Address.class)
+              .putFeature(Features.Bean.IMMUTABLE, Boolean.TRUE);
+        validator.validate(authors.get(0));
+        assertEquals(1, cache.size()); // the country only
+
+        // the results depend on the configuration
+        factory.setMessageInterpolator(factory.getMessageInterpolator());
+        assertNotSame(cache, factory.getResultCache());
+        assertNotSame(factory.getResultCache(), factory.clone().getResultCache());
+    }
+
+    public void testValidateEach() {
+        ClassValidator validator = getValidator().unwrap(ClassValidator.class);
+        Author author = new Author();
+        author.setFirstName("Karl");
+        author.setLastName("May");
+        List<Book> books = new ArrayList<Book>();
+        for (int i = 0; i < 10; i++) {
+            Book book = new Book();
+            book.setAuthor(author);
+            if (i % 3 != 0) book.setTitle("Book " + i);
+            books.add(book);
+        }
+        final List<Integer> invalid = new ArrayList<Integer>();
+        int count = validator.validateEach(books.iterator(), new ValidationCallback<Book>() {
+            public boolean invalid(Book object, int index,
+                                   Set<ConstraintViolation<Book>> violations) {
+                assertFalse(violations.isEmpty());
+                assertSame(object, violations.iterator().next().getRootBean());
+                invalid.add(index);
+                return true;
+            }
+        }, First.class);
+        assertEquals(10, count);
+        assertEquals(Arrays.asList(0, 3, 6, 9), invalid);
+
+        invalid.clear();
+        count = validator.validateEach(books.iterator(), new ValidationCallback<Book>() {
+            public boolean invalid(Book object, int index,
+                                   Set<ConstraintViolation<Book>> violations) {
+                invalid.add(index);
+                return invalid.size() < 2;
+            }
+        }, First.class);
+        assertEquals(4, count);
+        assertEquals(Arrays.asList(0, 3), invalid);
+    }
+
+    public void testRevalidate() {
+        Validator validator = getValidator();
+        ClassValidator incremental = validator.unwrap(ClassValidator.class);
+        Author author = new Author();
+        author.setFirstName("Karl");
+        author.setAddresses(new ArrayList<Address>());
+        Address address = new Address();
+        author.getAddresses().add(address);
+        Book book = new Book();
+        book.setAuthor(author);
+        Set<ConstraintViolation<Book>> violations = validator.validate(book);
+        assertPropertyPath("author.addresses[0].addressline1", violations);
+
+        address.setAddressline1("Marienplatz 1");
+        violations = incremental.revalidate(book, violations,
+              Arrays.asList("author.addresses[0].addressline1"));
+        assertViolations(validator.validate(book), violations);
+
+        author.setLastName("May");
+        book.setTitle("Winnetou");
+        violations = incremental.revalidate(book, violations,
+              Arrays.asList("author.lastName", "title"));
+        assertViolations(validator.validate(book), violations);
+
+        Address other = new Address();
+        other.setCity("Radebeul");
+        author.getAddresses().add(other);
+        violations = incremental.revalidate(book, violations,
+              Arrays.asList("author.addresses[1]"));
+        assertViolations(validator.validate(book), violations);
+        assertPropertyPath("author.addresses[1].addressline1", violations);
+    }
+
+    @GroupSequence({First.class, Second.class})
+    public interface FirstThenSecond {
+    }
+
+    public static class Draft {
+        @NotNull(groups = First.class)
+        private String title;
+        @NotNull(groups = Second.class)
+        private String text;
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    public void testRevalidateSequence() {
+        Validator validator = getValidator();
+        ClassValidator incremental = validator.unwrap(ClassValidator.class);
+        Draft draft = new Draft();
+        Set<ConstraintViolation<Draft>> violations =
+              validator.validate(draft, FirstThenSecond.class);
+        assertPropertyPath("title", violations);
+        assertEquals(1, violations.size());
+
+        // the first group passes now: the second group is validated for all properties
+        draft.title = "Winnetou";
+        violations = incremental.revalidate(draft, violations, Arrays.asList("title"),
+              FirstThenSecond.class);
+        assertViolations(validator.validate(draft, FirstThenSecond.class), violations);
+        assertPropertyPath("text", violations);
+
+        // the first group fails again: the second group is not validated
+        draft.title = null;
+        violations = incremental.revalidate(draft, violations, Arrays.asList("title"),
+              FirstThenSecond.class);
+        assertViolations(validator.validate(draft, FirstThenSecond.class), violations);
+        assertEquals(1, violations.size());
+        assertPropertyPath("title", violations);
+    }
+
+    public static class CodeItem {
+        @KnownCode
+        private String code;
+
+        public CodeItem(String code) {
+            this.code = code;
+        }
+    }
+
+    public static class CodeOrder {
+        @Valid
+        private List<CodeItem> items = new ArrayList<CodeItem>();
+    }
+
+    public void testBatchConstraintValidator() {
+        Validator validator = getValidator();
+        CodeOrder order = new CodeOrder();
+        for (int i = 0; i < 100; i++) {
+            order.items.add(new CodeItem(i % 10 == 3 ? "X" : "ABC".substring(i % 3, i % 3 + 1)));
+        }
+        KnownCodeValidator.calls = 0;
+        Set<ConstraintViolation<CodeOrder>> violations = validator.validate(order);
+        assertEquals(1, KnownCodeValidator.calls);
+        assertEquals(10, violations.size());
+        assertPropertyPath("items[13].code", violations);
+        for (ConstraintViolation<CodeOrder> each : violations) {
+            assertEquals("Unknown code", each.getMessage());
+            assertEquals("X", each.getInvalidValue());
+            assertSame(order, each.getRootBean());
+            assertEquals("X", ((CodeItem) each.getLeafBean()).code);
+        }
+        assertEquals(1, validator.validateValue(CodeItem.class, "code", "Y").size());
+        assertTrue(validator.validateValue(CodeItem.class, "code", "A").isEmpty());
+    }
+
+    /** compare the paths and messages, ConstraintViolationImpl does not implement equals */
+    private <T> void assertViolations(Set<ConstraintViolation<T>> expected,
+                                      Set<ConstraintViolation<T>> actual) {
+        assertEquals(toStrings(expected), toStrings(actual));
+    }
+
+    private <T> List<String> toStrings(Set<ConstraintViolation<T>> violations) {
+        List<String> result = new ArrayList<String>();
+        for (ConstraintViolation<T> each : violations) {
+            result.add(each.getPropertyPath() + ": " + each.getMessage());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     private <T> void assertPropertyPath(String propertyPath,
                                         Set<ConstraintViolation<T>> constraints) {
         for (ConstraintViolation each : constraints) {
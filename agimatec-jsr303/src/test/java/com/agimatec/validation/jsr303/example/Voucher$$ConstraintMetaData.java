@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+package com.agimatec.validation.jsr303.example;
+
+import com.agimatec.validation.jsr303.ConstraintMetaDataProvider;
+
+/** like a provider generated by agimatec-jsr303-processor, without the field "owner" */
+public final class Voucher$$ConstraintMetaData implements ConstraintMetaDataProvider {
+    public String getBeanClassName() {
+        return Voucher.class.getName();
+    }
+
+    public String[] getConstrainedFields() {
+        return new String[]{"code"};
+    }
+
+    public String[] getConstrainedMethods() {
+        return new String[0];
+    }
+}
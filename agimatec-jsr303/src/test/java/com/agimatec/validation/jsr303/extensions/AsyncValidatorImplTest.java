@@ -0,0 +1,102 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.jsr303.extensions;
+
+import com.agimatec.validation.jsr303.AgimatecValidatorFactory;
+import com.agimatec.validation.jsr303.example.Address;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import javax.validation.ConstraintViolation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncValidatorImpl Tester.
+ */
+public class AsyncValidatorImplTest extends TestCase {
+    public AsyncValidatorImplTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(AsyncValidatorImplTest.class);
+    }
+
+    public void testValidateAsync() throws Exception {
+        AsyncValidator validator = getValidator();
+        final List<Set<ConstraintViolation<Address>>> completed =
+              new ArrayList<Set<ConstraintViolation<Address>>>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Set<ConstraintViolation<Address>>> future = validator
+                  .validateAsync(executor, new Address(), new AsyncValidator.Completion<Address>() {
+                      public void completed(Set<ConstraintViolation<Address>> violations) {
+                          completed.add(violations);
+                      }
+
+                      public void failed(Throwable error) {
+                          fail(error.toString());
+                      }
+                  });
+            Set<ConstraintViolation<Address>> violations = future.get(10, TimeUnit.SECONDS);
+            assertEquals(validator.validate(new Address()).size(), violations.size());
+            assertFalse(violations.isEmpty());
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(1, completed.size());
+            assertSame(violations, completed.get(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testCancel() throws Exception {
+        AsyncValidator validator = getValidator();
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Future<Set<ConstraintViolation<Address>>> future =
+              validator.validateAsync(new Executor() {
+                  public void execute(Runnable command) {
+                      tasks.add(command);
+                  }
+              }, new Address(), new AsyncValidator.Completion<Address>() {
+                  public void completed(Set<ConstraintViolation<Address>> violations) {
+                      fail("cancelled");
+                  }
+
+                  public void failed(Throwable error) {
+                      fail("cancelled");
+                  }
+              });
+        assertEquals(1, tasks.size());
+        assertTrue(future.cancel(false));
+        tasks.get(0).run();
+        assertTrue(future.isCancelled());
+    }
+
+    private AsyncValidator getValidator() {
+        return AgimatecValidatorFactory.getDefault().getValidator()
+              .unwrap(AsyncValidator.class);
+    }
+}
@@ -18,15 +18,24 @@
  */
 package com.agimatec.validation.jsr303.groups;
 
+import com.agimatec.validation.jsr303.AgimatecValidationProvider;
+import com.agimatec.validation.jsr303.AgimatecValidatorConfiguration;
 import com.agimatec.validation.jsr303.AgimatecValidatorFactory;
+import com.agimatec.validation.jsr303.ClassValidator;
 import com.agimatec.validation.jsr303.example.*;
 import com.agimatec.validation.jsr303.util.TestUtils;
 import junit.framework.TestCase;
 
 import javax.validation.ConstraintViolation;
+import javax.validation.Valid;
+import javax.validation.Validation;
 import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Description: <br/>
@@ -166,4 +175,141 @@ public class CollectionValidationTest extends TestCase {
         assertEquals(1, violations.size());
         assertNotNull(TestUtils.getViolation(violations, "employees[1].firstName"));
     }
+
+    public void testValidateListInParallel() {
+        Validator parallelValidator = Validation.byProvider(AgimatecValidationProvider.class)
+              .configure()
+              .addProperty(AgimatecValidatorConfiguration.Properties.PARALLEL_THRESHOLD, "2")
+              .addProperty(AgimatecValidatorConfiguration.Properties.PARALLEL_THREADS, "3")
+              .buildValidatorFactory().getValidator();
+        Author author = new Author();
+        author.setFirstName("Peter");
+        author.setLastName("Ford");
+        author.setCompany("IBM");
+        author.setAddresses(new ArrayList());
+        Country country = new Country(); // shared by all addresses
+        country.setName("Germany");
+        for (int i = 0; i < 10; i++) {
+            Address adr = new Address();
+            adr.setCountry(country);
+            adr.setCity("Bonn");
+            adr.setAddressline1("Strasse " + i);
+            author.getAddresses().add(adr);
+        }
+
+        Set<ConstraintViolation<Author>> violations;
+        violations = parallelValidator.validate(author);
+        assertEquals(0, violations.size());
+
+        author.getAddresses().get(1).setCity(null); // violate not null
+        author.getAddresses().get(8).setAddressline1(null); // violate not null
+        country.setName(null); // violate not null, but only once
+        violations = parallelValidator.validate(author);
+        assertEquals(3, violations.size());
+        assertNotNull(TestUtils.getViolation(violations, "addresses[1].city"));
+        assertNotNull(TestUtils.getViolation(violations, "addresses[8].addressline1"));
+        assertNotNull(TestUtils.getViolation(violations, "addresses[0].country.name"));
+        assertEquals(validator.validate(author).size(), violations.size());
+    }
+
+    public void testValidateListInParallelWithBusyExecutor() {
+        Author author = new Author();
+        author.setFirstName("Peter");
+        author.setLastName("Ford");
+        author.setCompany("IBM");
+        author.setAddresses(new ArrayList());
+        for (int i = 0; i < 10; i++) {
+            Address adr = new Address();
+            adr.setCountry(new Country());
+            adr.getCountry().setName("Germany");
+            adr.setCity(i == 7 ? null : "Bonn"); // violate not null
+            adr.setAddressline1("Strasse " + i);
+            author.getAddresses().add(adr);
+        }
+        // the parts are queued, but never started: the caller validates them
+        Validator parallelValidator = AgimatecValidatorFactory.getDefault().getValidator();
+        ((ClassValidator) parallelValidator).setParallelValidation(new Executor() {
+            public void execute(Runnable command) {
+            }
+        }, 3, 2);
+        Set<ConstraintViolation<Author>> violations = parallelValidator.validate(author);
+        assertEquals(1, violations.size());
+        assertNotNull(TestUtils.getViolation(violations, "addresses[7].city"));
+
+        // the parts are rejected: the caller validates them
+        ((ClassValidator) parallelValidator).setParallelValidation(new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        }, 3, 2);
+        violations = parallelValidator.validate(author);
+        assertEquals(1, violations.size());
+        assertNotNull(TestUtils.getViolation(violations, "addresses[7].city"));
+    }
+
+    /** acyclic beans (final classes): the validated objects are not tracked */
+    public static final class Shelf {
+        @Valid
+        private List<Item> items = new ArrayList<Item>();
+    }
+
+    public static final class Item {
+        @Valid
+        private Label label;
+    }
+
+    public static final class Label {
+        @NotNull
+        private String name;
+        private Tag tag;
+        /** the number of traversals of the label */
+        private int tagReads;
+
+        @Valid
+        public Tag getTag() {
+            tagReads++;
+            return tag;
+        }
+    }
+
+    public static final class Tag {
+        @NotNull
+        private String text;
+    }
+
+    public void testSharedBeanTraversedOnce() {
+        Shelf shelf = new Shelf();
+        Label label = new Label(); // shared by all items
+        for (int i = 0; i < 10; i++) {
+            Item item = new Item();
+            item.label = label;
+            shelf.items.add(item);
+        }
+        Set<ConstraintViolation<Shelf>> violations = validator.validate(shelf);
+        assertEquals(1, violations.size());
+        assertEquals(1, label.tagReads);
+    }
+
+    public void testValidateSharedBeanInParallel() {
+        Shelf shelf = new Shelf();
+        Label label = new Label(); // shared by the items of all parts
+        for (int i = 0; i < 10; i++) {
+            Item item = new Item();
+            item.label = label;
+            shelf.items.add(item);
+        }
+        // the caller validates the parts one after another
+        Validator parallelValidator = AgimatecValidatorFactory.getDefault().getValidator();
+        ((ClassValidator) parallelValidator).setParallelValidation(new Executor() {
+            public void execute(Runnable command) {
+            }
+        }, 3, 2);
+        Set<ConstraintViolation<Shelf>> violations = parallelValidator.validate(shelf);
+        assertEquals(1, violations.size());
+        assertEquals(1, validator.validate(shelf).size());
+        assertNotNull(TestUtils.getViolation(violations, "items[0].label.name"));
+        assertFalse(((ClassValidator) parallelValidator).isValid(shelf));
+        label.name = "shared";
+        assertTrue(((ClassValidator) parallelValidator).isValid(shelf));
+    }
 }
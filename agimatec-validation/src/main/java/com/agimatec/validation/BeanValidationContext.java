@@ -18,9 +18,7 @@ package com.agimatec.validation;
 
 import com.agimatec.validation.model.*;
 import com.agimatec.validation.util.AccessStrategy;
-import com.agimatec.validation.util.PropertyAccess;
-
-import java.util.IdentityHashMap;
+import com.agimatec.validation.util.IdentityMarkSet;
 
 /**
  * Description: Context during validation to help the {@link com.agimatec.validation.model.Validation}
@@ -56,8 +54,16 @@ public class BeanValidationContext<T extends ValidationListener>
     /** access strategy used for previous access */
     private AccessStrategy access;
 
+    /** max. size of maps to clear (instead of to drop) in reset() */
+    protected static final int MAX_REUSED_SIZE = 256;
+
     /** set of objects already validated to avoid endless loops. */
-    protected IdentityHashMap validatedObjects = new IdentityHashMap();
+    protected IdentityMarkSet validatedObjects = new IdentityMarkSet();
+    /**
+     * false when no object can be reached twice (no cascades), so that
+     * validated objects need not be collected
+     */
+    private boolean trackValidated = true;
 
     /**
      * true when value is fixed, so that it will NOT be dynamically
@@ -89,12 +95,27 @@ public class BeanValidationContext<T extends ValidationListener>
      * @return true when the object was not already validated in this context
      */
     public boolean collectValidated() {
-        return validatedObjects.put(getBean(), Boolean.TRUE) == null;
+        return !trackValidated || validatedObjects.mark(getBean(), 0);
     }
 
     /** @return true when the object has already been validated in this context */
     public boolean isValidated(Object object) {
-        return validatedObjects.containsKey(object);
+        return validatedObjects.contains(object);
+    }
+
+    public boolean isTrackValidated() {
+        return trackValidated;
+    }
+
+    /**
+     * @param trackValidated - false when it is known (e.g. because the
+     *                       {@link com.agimatec.validation.model.ValidationPlan}
+     *                       of the bean has no cascades) that no object can be reached
+     *                       twice, so that collectValidated() need not remember the
+     *                       validated objects.
+     */
+    public void setTrackValidated(boolean trackValidated) {
+        this.trackValidated = trackValidated;
     }
 
     /**
@@ -105,6 +126,29 @@ public class BeanValidationContext<T extends ValidationListener>
         validatedObjects.clear();
     }
 
+    /**
+     * reset the complete state of this context, so that it can be reused for
+     * another validation. Afterwards the context holds no reference to any
+     * bean, metaBean or value of the previous validation.
+     *
+     * @param listener - the listener for the next validation (can be null)
+     */
+    public void reset(T listener) {
+        this.listener = listener;
+        bean = null;
+        metaBean = null;
+        metaProperty = null;
+        fixed = false;
+        trackValidated = true;
+        unknownValue();
+        if (validatedObjects.isOversized(MAX_REUSED_SIZE)) {
+            // do not keep the large internal table of a large object graph
+            validatedObjects = new IdentityMarkSet();
+        } else {
+            validatedObjects.clear();
+        }
+    }
+
     public void setBean(Object aBean, MetaBean aMetaBean) {
         bean = aBean;
         metaBean = aMetaBean;
@@ -122,8 +166,7 @@ public class BeanValidationContext<T extends ValidationListener>
      */
     public Object getPropertyValue() {
         if (access == null) { // undefined access strategy
-            return getPropertyValue(
-                  new PropertyAccess(bean.getClass(), metaProperty.getName()));
+            return getPropertyValue(metaProperty.getPropertyAccess(bean.getClass()));
         } else {
             return getPropertyValue(access);
         }
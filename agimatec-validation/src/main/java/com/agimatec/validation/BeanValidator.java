@@ -18,7 +18,6 @@ package com.agimatec.validation;
 
 import com.agimatec.validation.model.*;
 import com.agimatec.validation.util.AccessStrategy;
-import com.agimatec.validation.util.PropertyAccess;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -188,10 +187,23 @@ public class BeanValidator<T extends ValidationListener> {
      */
     public void validateProperty(ValidationContext context) {
         for (Validation validation : context.getMetaProperty().getValidations()) {
+            if (isCompleted(context)) return;
             validation.validate(context);
         }
     }
 
+    /**
+     * hook to stop the validation early, e.g. when the max. number of
+     * violations has been reached. The remaining validations, related beans
+     * and elements of collections will then be skipped.
+     *
+     * @return true when no further validations shall be executed
+     *         in the context (default: false)
+     */
+    protected boolean isCompleted(ValidationContext context) {
+        return false;
+    }
+
     /**
      * validate a complex 'bean' with related beans according to
      * validation rules in 'metaBean'
@@ -226,15 +238,12 @@ public class BeanValidator<T extends ValidationListener> {
 
     private void validateArrayInContext(ValidationContext context) {
         int index = 0;
-        DynamicMetaBean dyn = getDynamicMetaBean(context);
+        final MetaBean metaBean = context.getMetaBean();
         for (Object each : ((Object[]) context.getBean())) {
+            if (isCompleted(context)) break;
             context.setCurrentIndex(index++);
             if (each == null) continue; // or throw IllegalArgumentException? (=> spec)
-            if (dyn != null) {
-                context.setBean(each, dyn.resolveMetaBean(each));
-            } else {
-                context.setBean(each);
-            }
+            context.setBean(each, getElementMetaBean(metaBean, each));
             validateBeanNet(context);
         }
     }
@@ -244,22 +253,28 @@ public class BeanValidator<T extends ValidationListener> {
               (DynamicMetaBean) context.getMetaBean() : null;
     }
 
+    /**
+     * @param metaBean - the metaBean of the collection, array or map
+     * @param element  - an element of the collection, array or map
+     * @return the metaBean to validate the element with
+     */
+    protected MetaBean getElementMetaBean(MetaBean metaBean, Object element) {
+        return metaBean instanceof DynamicMetaBean ? metaBean.resolveMetaBean(element) :
+              metaBean;
+    }
+
     /** Any object implementing java.lang.Iterable is supported */
     private void validateIteratableInContext(ValidationContext context) {
         Iterator it = ((Iterable) context.getBean()).iterator();
         int index = 0;
         // jsr303 spec: Each object provided by the iterator is validated.
-        final DynamicMetaBean dyn = getDynamicMetaBean(context);
-        while (it.hasNext()) { // to Many
+        final MetaBean metaBean = context.getMetaBean();
+        while (it.hasNext() && !isCompleted(context)) { // to Many
             Object each = it.next();
             context.setCurrentIndex(index++);
             if (each == null)
                 continue; // enhancement: throw IllegalArgumentException? (=> spec)
-            if (dyn != null) {
-                context.setBean(each, dyn.resolveMetaBean(each));
-            } else {
-                context.setBean(each);
-            }
+            context.setBean(each, getElementMetaBean(metaBean, each));
             validateBeanNet(context);
         }
     }
@@ -267,46 +282,44 @@ public class BeanValidator<T extends ValidationListener> {
     private void validateMapInContext(ValidationContext context) {
         // jsr303 spec: For Map, the value of each Map.Entry is validated (key is not validated).
         Iterator<Map.Entry> it = ((Map) context.getBean()).entrySet().iterator();
-        final DynamicMetaBean dyn = getDynamicMetaBean(context);
-        while (it.hasNext()) { // to Many
+        final MetaBean metaBean = context.getMetaBean();
+        while (it.hasNext() && !isCompleted(context)) { // to Many
             Map.Entry entry = it.next();
             context.setCurrentKey(entry.getKey());
             if (entry.getValue() == null)
                 continue; // enhancement: throw IllegalArgumentException? (=> spec)
-            if (dyn != null) {
-                context.setBean(entry.getValue(), dyn.resolveMetaBean(entry.getValue()));
-            } else {
-                context.setBean(entry.getValue());
-            }
+            context.setBean(entry.getValue(), getElementMetaBean(metaBean, entry.getValue()));
             validateBeanNet(context);
         }
     }
 
     /** internal validate a bean (=not a collection of beans) and its related beans */
     protected void validateBeanNet(ValidationContext context) {
-        if (context.collectValidated()) {
-            validateBean(context);
-            for (MetaProperty prop : context.getMetaBean().getProperties()) {
-                validateRelatedBean(context, prop);
+        if (!isCompleted(context) && context.collectValidated()) {
+            final ValidationPlan plan = context.getMetaBean().getValidationPlan();
+            validateBean(context, plan);
+            for (ValidationPlan.Cascade cascade : plan.getCascades()) {
+                if (isCompleted(context)) break;
+                validateRelatedBean(context, cascade);
             }
         }
     }
 
-    private void validateRelatedBean(ValidationContext context, MetaProperty prop) {
-        AccessStrategy[] access = prop.getFeature(Features.Property.REF_CASCADE);
-        if (access == null && prop.getMetaBean() != null) { // single property access strategy
-            // save old values from context
-            final Object bean = context.getBean();
-            final MetaBean mbean = context.getMetaBean();
+    /** validate the related bean(s) of the current bean of the context */
+    protected void validateRelatedBean(ValidationContext context,
+                                       ValidationPlan.Cascade cascade) {
+        final MetaProperty prop = cascade.getProperty();
+        final AccessStrategy[] access = cascade.getAccesses();
+        // save old values from context
+        final Object bean = context.getBean();
+        final MetaBean mbean = context.getMetaBean();
+        if (access == null) { // single property access strategy
             // modify context state for relationship-target bean
-            context.moveDown(prop, new PropertyAccess(bean.getClass(), prop.getName()));
+            context.moveDown(prop, prop.getPropertyAccess(bean.getClass()));
             validateContext(context);
             // restore old values in context
             context.moveUp(bean, mbean);
-        } else if (access != null) { // different accesses to relation
-            // save old values from context
-            final Object bean = context.getBean();
-            final MetaBean mbean = context.getMetaBean();
+        } else { // different accesses to relation
             for (AccessStrategy each : access) {
                 // modify context state for relationship-target bean
                 context.moveDown(prop, each);
@@ -319,10 +332,18 @@ public class BeanValidator<T extends ValidationListener> {
 
     /** validate a single bean only. no related beans will be validated */
     public void validateBean(ValidationContext context) {
+        validateBean(context, context.getMetaBean().getValidationPlan());
+    }
+
+    /**
+     * validate a single bean according to the compiled plan of its metaBean.
+     * no related beans will be validated.
+     */
+    protected void validateBean(ValidationContext context, ValidationPlan plan) {
         /**
          * execute all property level validations
          */
-        for (MetaProperty prop : context.getMetaBean().getProperties()) {
+        for (MetaProperty prop : plan.getConstrainedProperties()) {
             context.setMetaProperty(prop);
             validateProperty(context);
         }
@@ -330,7 +351,8 @@ public class BeanValidator<T extends ValidationListener> {
          * execute all bean level validations
          */
         context.setMetaProperty(null);
-        for (Validation validation : context.getMetaBean().getValidations()) {
+        for (Validation validation : plan.getBeanValidations()) {
+            if (isCompleted(context)) return;
             validation.validate(context);
         }
     }
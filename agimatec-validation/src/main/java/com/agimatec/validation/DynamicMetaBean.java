@@ -41,4 +41,9 @@ final class DynamicMetaBean extends MetaBean {
         return bean instanceof Class ?
                 finder.findForClass((Class) bean) : finder.findForClass(bean.getClass());
     }
+
+    @Override
+    public boolean isDynamic() {
+        return true;
+    }
 }
@@ -16,7 +16,9 @@
  */
 package com.agimatec.validation;
 
+import com.agimatec.validation.model.Features;
 import com.agimatec.validation.model.MetaBean;
+import com.agimatec.validation.model.MetaProperty;
 import com.agimatec.validation.xml.XMLMetaBean;
 import com.agimatec.validation.xml.XMLMetaBeanFactory;
 import com.agimatec.validation.xml.XMLMetaBeanInfos;
@@ -147,8 +149,8 @@ public class MetaBeanBuilder {
                         MetaBean meta = all.get(xmlMeta.getId());
                         if (meta == null) { // gibt es nicht
                             copy = createMetaBean(xmlMeta);
-                        } else { // gibt es, jetzt kopieren
-                            copy = meta.copy();
+                        } else { // gibt es, jetzt kopieren (copy on write)
+                            copy = meta.overlay();
                         }
                         copies.put(xmlMeta.getId(), copy);
                     }
@@ -160,22 +162,38 @@ public class MetaBeanBuilder {
             }
         }
         if (nothing) return all;
+        /*
+         * unveraenderte werden nur kopiert, wenn sie (direkt oder indirekt)
+         * eine Relationship zu einer Kopie haben
+         */
+        boolean copied = true;
+        while (copied) {
+            copied = false;
+            for (Map.Entry<String, MetaBean> entry : all.entrySet()) {
+                if (!copies.containsKey(entry.getKey()) &&
+                      refersToAny(entry.getValue(), copies)) {
+                    copies.put(entry.getKey(), entry.getValue().overlay());
+                    copied = true;
+                }
+            }
+        }
         for (Map.Entry<String, MetaBean> entry : all.entrySet()) {
-            /*
-            * alle unveraenderten werden AUCH KOPIERT (nur zwar nur, wegen
-            * potentieller CrossReferenzen durch Relationships)
-            */
             if (!copies.containsKey(entry.getKey())) {
-                if (entry.getValue().hasRelationships()) {
-                    copies.put(entry.getKey(), (MetaBean) entry.getValue().copy());
-                } else { // no relationship: do not clone()
-                    copies.put(entry.getKey(), entry.getValue());
-                }
+                copies.put(entry.getKey(), entry.getValue());
             }
         }
         return copies;
     }
 
+    /** @return true when a property refers to one of the MetaBeans by id */
+    private boolean refersToAny(MetaBean meta, Map<String, MetaBean> metaBeans) {
+        for (MetaProperty prop : meta.getProperties()) {
+            final String beanRef = prop.getFeature(Features.Property.REF_BEAN_ID);
+            if (beanRef != null && metaBeans.containsKey(beanRef)) return true;
+        }
+        return false;
+    }
+
     private void assertXmlFactory() {
         if (xmlFactory == null) {
             throw new IllegalStateException("no xmlFactory available");
@@ -17,27 +17,133 @@
 package com.agimatec.validation;
 
 import com.agimatec.validation.model.MetaBean;
-import org.apache.commons.collections.FastHashMap;
+import com.agimatec.validation.model.MetaProperty;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Description: a cache to hold metabeans by id and by class.<br/>
+ * Reads do not lock and inserts do not copy the cache.
+ * MetaBeans of classes that can be unloaded independently of this cache
+ * (classes of other class loaders than the one of this cache and its parents)
+ * are held weakly, like their classes, so that the cache never keeps these class
+ * loaders alive: calling {@link #clear(ClassLoader)} when an application is
+ * undeployed is not required. Such a MetaBean stays cached as long as it is
+ * referenced elsewhere (e.g. by a validation in progress or by a related MetaBean),
+ * otherwise it can be collected and is built again when required.
+ * {@link #clear(ClassLoader)} removes the MetaBeans of a class loader at once.<br/>
+ * The number of MetaBeans can be bounded by {@link #setMaxSize(int)}: the MetaBeans
+ * not found since they have been passed over last are evicted first (clock algorithm),
+ * together with the cached MetaBeans that refer to them (so that they are not kept
+ * alive by their relationships). They are built again when required.<br/>
  * User: roman.stumm <br/>
  * Date: 18.02.2008 <br/>
  * Time: 11:38:53 <br/>
  * Copyright: Agimatec GmbH 2008
  */
 public class MetaBeanCache implements MetaBeanFinder, Serializable {
-    protected final FastHashMap cacheById;
-    protected final FastHashMap cacheByClass;
+    /** MetaBeans of classes of the class loader of this cache (or its parents) */
+    protected final ConcurrentMap<String, MetaBean> cacheById;
+    protected final ConcurrentMap<Class<?>, MetaBean> cacheByClass;
+    /** MetaBeans of classes of other class loaders */
+    private transient ConcurrentMap<String, ForeignRef> foreignById;
+    private transient ConcurrentMap<ClassKey, ForeignRef> foreignByClass;
+    /** the references of the MetaBeans that have been collected */
+    private transient ReferenceQueue<MetaBean> collected;
+    /** incremented whenever MetaBeans are removed or replaced */
+    private final AtomicLong removals = new AtomicLong();
+    /** max. number of MetaBeans, 0 for no limit */
+    private volatile int maxSize;
+    /** the slots in the order to pass them over (only when the size is bounded) */
+    private transient ConcurrentLinkedQueue<Slot> cachedIds;
+    /** the current slot of each id cached (only when the size is bounded) */
+    private transient ConcurrentMap<String, Slot> slots;
+    /**
+     * the ids of the cached MetaBeans referring to the MetaBean with the id
+     * (only when the size is bounded, may contain ids that do not refer to it anymore)
+     */
+    private transient ConcurrentMap<String, ConcurrentMap<String, Boolean>> referrers;
+    private final AtomicLong evictions = new AtomicLong();
+    /** notified by clear(ClassLoader) */
+    private transient List<Listener> listeners;
+
+    /**
+     * a holder of other metadata of classes (e.g. a MetaBeanFactory)
+     * that must be released together with the MetaBeans
+     */
+    public interface Listener {
+        /** the MetaBeans of the classes of the loader and its descendants have been removed */
+        void cleared(ClassLoader loader);
+    }
+
+    /** a class (held weakly), compared by identity */
+    private static final class ClassKey extends WeakReference<Class<?>> {
+        private final int hash;
+
+        private ClassKey(Class<?> clazz) {
+            super(clazz);
+            hash = System.identityHashCode(clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ClassKey)) return false;
+            final Class<?> clazz = get();
+            return clazz != null && clazz == ((ClassKey) o).get();
+        }
+    }
+
+    /** an id cached, with the bit set when its MetaBean has been found */
+    private static final class Slot {
+        private final String id;
+        private volatile boolean referenced;
+
+        private Slot(String id) {
+            this.id = id;
+        }
+    }
+
+    /** a MetaBean (held weakly) of a class of another class loader */
+    private static final class ForeignRef extends WeakReference<MetaBean> {
+        private final String id;
+        /** null when not cached by class */
+        private final ClassKey classKey;
+
+        private ForeignRef(MetaBean beanInfo, ClassKey classKey,
+                           ReferenceQueue<MetaBean> queue) {
+            super(beanInfo, queue);
+            this.id = beanInfo.getId();
+            this.classKey = classKey;
+        }
+    }
 
     public MetaBeanCache() {
-        this.cacheById = new FastHashMap();
-        cacheByClass = new FastHashMap();
-        cacheByClass.setFast(true);
-        cacheById.setFast(true);
+        this.cacheById = new ConcurrentHashMap<String, MetaBean>();
+        this.cacheByClass = new ConcurrentHashMap<Class<?>, MetaBean>();
+        initForeign();
     }
 
     public MetaBeanCache(Map<String, MetaBean> beans) {
@@ -47,37 +153,352 @@ public class MetaBeanCache implements MetaBeanFinder, Serializable {
         }
     }
 
+    private void initForeign() {
+        foreignById = new ConcurrentHashMap<String, ForeignRef>();
+        foreignByClass = new ConcurrentHashMap<ClassKey, ForeignRef>();
+        collected = new ReferenceQueue<MetaBean>();
+        cachedIds = new ConcurrentLinkedQueue<Slot>();
+        slots = new ConcurrentHashMap<String, Slot>();
+        referrers = new ConcurrentHashMap<String, ConcurrentMap<String, Boolean>>();
+        listeners = new CopyOnWriteArrayList<Listener>();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        initForeign(); // MetaBeans of other class loaders are not serialized
+        if (maxSize > 0) addSlots();
+    }
+
+    /**
+     * @return a number that changes whenever MetaBeans are removed from this cache
+     *         or replaced (not when MetaBeans are added or evicted to bound the size).
+     *         When it is unchanged, the MetaBeans found before are still valid.
+     */
+    public long getRemovalCount() {
+        return removals.get();
+    }
+
+    /** @return the number of MetaBeans cached (including collected ones not yet purged) */
+    public int size() {
+        return cacheById.size() + foreignById.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize - max. number of MetaBeans to keep, 0 (default) for no limit.
+     *                Should be larger than the number of MetaBeans of the xml descriptors,
+     *                otherwise the MetaBeanManager builds them again for each findAll().
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        if (maxSize > 0) {
+            if (slots.isEmpty()) addSlots();
+            evict(maxSize);
+        } else {
+            slots.clear();
+            cachedIds.clear();
+            referrers.clear();
+        }
+    }
+
+    private void addSlots() {
+        for (MetaBean each : findAll().values()) {
+            addSlot(each.getId());
+            addReferrer(each);
+        }
+    }
+
+    /** add the MetaBean to the referrers of the MetaBeans it refers to */
+    private void addReferrer(MetaBean beanInfo) {
+        for (MetaProperty prop : beanInfo.getProperties()) {
+            final MetaBean related = prop.getMetaBean();
+            if (related == null || related == beanInfo || related.getId() == null) continue;
+            ConcurrentMap<String, Boolean> ids = referrers.get(related.getId());
+            if (ids == null) {
+                ids = new ConcurrentHashMap<String, Boolean>();
+                final ConcurrentMap<String, Boolean> existing =
+                      referrers.putIfAbsent(related.getId(), ids);
+                if (existing != null) ids = existing;
+            }
+            ids.put(beanInfo.getId(), Boolean.TRUE);
+        }
+    }
+
+    /** remove the MetaBean from the referrers of the MetaBeans it refers to */
+    private void removeReferrer(MetaBean beanInfo) {
+        for (MetaProperty prop : beanInfo.getProperties()) {
+            final MetaBean related = prop.getMetaBean();
+            if (related == null || related.getId() == null) continue;
+            final ConcurrentMap<String, Boolean> ids = referrers.get(related.getId());
+            if (ids != null) ids.remove(beanInfo.getId());
+        }
+    }
+
+    private static boolean refersTo(MetaBean beanInfo, MetaBean related) {
+        for (MetaProperty prop : beanInfo.getProperties()) {
+            if (prop.getMetaBean() == related) return true;
+        }
+        return false;
+    }
+
+    private void addSlot(String id) {
+        final Slot slot = new Slot(id);
+        final Slot replaced = slots.put(id, slot);
+        if (replaced != null) cachedIds.remove(replaced);
+        cachedIds.add(slot);
+    }
+
+    /** forget the slot of a MetaBean removed */
+    private void removeSlot(String id) {
+        final Slot slot = slots.remove(id);
+        if (slot != null) cachedIds.remove(slot);
+    }
+
+    /** forget the slots of MetaBeans removed */
+    private void removeSlots() {
+        for (Iterator<Slot> it = cachedIds.iterator(); it.hasNext();) {
+            final Slot slot = it.next();
+            if (lookup(slot.id) == null) {
+                slots.remove(slot.id, slot);
+                it.remove();
+            }
+        }
+    }
+
+    /** set the bit of the slot of a MetaBean found */
+    private void touch(String id) {
+        final Slot slot = slots.get(id);
+        if (slot != null && !slot.referenced) slot.referenced = true;
+    }
+
+    /**
+     * @return the number of MetaBeans removed to bound the size of this cache
+     *         (including the MetaBeans referring to them) or by {@link #clear(ClassLoader)}
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * remove the MetaBeans of the classes of the class loader and its descendants,
+     * so that the cache does not keep them alive
+     */
+    public void clear(ClassLoader loader) {
+        removals.incrementAndGet();
+        for (Iterator<MetaBean> it = cacheById.values().iterator(); it.hasNext();) {
+            final MetaBean each = it.next();
+            if (isLoadedBy(each.getBeanClass(), loader)) {
+                it.remove();
+                cacheByClass.remove(each.getBeanClass());
+                if (!referrers.isEmpty()) removeReferrer(each);
+                evictions.incrementAndGet();
+            }
+        }
+        for (Iterator<ForeignRef> it = foreignById.values().iterator(); it.hasNext();) {
+            final ForeignRef ref = it.next();
+            final MetaBean each = ref.get();
+            if (each == null || isLoadedBy(each.getBeanClass(), loader)) {
+                it.remove();
+                if (ref.classKey != null) foreignByClass.remove(ref.classKey, ref);
+                if (each != null) {
+                    if (!referrers.isEmpty()) removeReferrer(each);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        if (!slots.isEmpty()) removeSlots();
+        for (Listener each : listeners) {
+            each.cleared(loader);
+        }
+    }
+
+    /** @param listener - to be notified by {@link #clear(ClassLoader)} (not serialized) */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** @return true when the class has been loaded by the loader or one of its descendants */
+    public static boolean isLoadedBy(Class<?> beanClass, ClassLoader loader) {
+        if (beanClass == null) return false;
+        for (ClassLoader each = beanClass.getClassLoader(); each != null;
+             each = each.getParent()) {
+            if (each == loader) return true;
+        }
+        return false;
+    }
+
+    /**
+     * remove MetaBeans until at most maxSize are left. The slots are passed over
+     * in turn: the MetaBean of a slot with the bit set gets a second chance
+     * (the bit is cleared), otherwise it is evicted.
+     */
+    private void evict(int maxSize) {
+        while (size() > maxSize) {
+            final Slot slot = cachedIds.poll();
+            if (slot == null) return;
+            if (slots.get(slot.id) != slot) continue; // removed or cached again
+            if (slot.referenced) {
+                slot.referenced = false;
+                cachedIds.add(slot);
+                continue;
+            }
+            final MetaBean each = lookup(slot.id);
+            if (each == null) {
+                slots.remove(slot.id, slot);
+            } else {
+                evictWithReferrers(each);
+            }
+        }
+    }
+
+    /**
+     * evict the MetaBean and all cached MetaBeans that refer to it (directly or
+     * through others), because they would keep it reachable and be related
+     * to another instance than the one built again.
+     */
+    private void evictWithReferrers(MetaBean victim) {
+        final Map<MetaBean, Boolean> evicted = new IdentityHashMap<MetaBean, Boolean>();
+        final List<MetaBean> pending = new ArrayList<MetaBean>();
+        pending.add(victim);
+        while (!pending.isEmpty()) {
+            final MetaBean each = pending.remove(pending.size() - 1);
+            if (evicted.put(each, Boolean.TRUE) != null) continue;
+            remove(each); // not a removal: the MetaBean is still valid
+            slots.remove(each.getId());
+            evictions.incrementAndGet();
+            final Map<String, Boolean> ids = referrers.get(each.getId());
+            if (ids == null) continue;
+            for (String id : ids.keySet()) {
+                final MetaBean referrer = lookup(id);
+                if (referrer != null && refersTo(referrer, each)) {
+                    pending.add(referrer);
+                } else {
+                    ids.remove(id); // refers to another instance
+                }
+            }
+        }
+    }
+
     public void clear() {
+        removals.incrementAndGet();
+        slots.clear();
+        cachedIds.clear();
+        referrers.clear();
         cacheById.clear();
         cacheByClass.clear();
+        foreignById.clear();
+        foreignByClass.clear();
     }
 
     public MetaBean findForId(String beanInfoId) {
-        return (MetaBean) cacheById.get(beanInfoId);
+        final MetaBean beanInfo = lookup(beanInfoId);
+        if (beanInfo != null && maxSize > 0) touch(beanInfoId);
+        return beanInfo;
+    }
+
+    private MetaBean lookup(String beanInfoId) {
+        final MetaBean beanInfo = cacheById.get(beanInfoId);
+        if (beanInfo != null || foreignById.isEmpty()) return beanInfo;
+        final ForeignRef ref = foreignById.get(beanInfoId);
+        return ref == null ? null : ref.get();
     }
 
     public MetaBean findForClass(Class clazz) {
-        return (MetaBean) cacheByClass.get(clazz);
+        MetaBean beanInfo = cacheByClass.get(clazz);
+        if (beanInfo == null && !foreignByClass.isEmpty()) {
+            final ForeignRef ref = foreignByClass.get(new ClassKey(clazz));
+            beanInfo = ref == null ? null : ref.get();
+        }
+        if (beanInfo != null && maxSize > 0) touch(beanInfo.getId());
+        return beanInfo;
     }
 
+    /** @return all MetaBeans by id, the map must not be modified */
     public Map<String, MetaBean> findAll() {
-        return cacheById;
+        if (foreignById.isEmpty()) return Collections.unmodifiableMap(cacheById);
+        final Map<String, MetaBean> all = new HashMap<String, MetaBean>(cacheById);
+        for (Map.Entry<String, ForeignRef> each : foreignById.entrySet()) {
+            final MetaBean beanInfo = each.getValue().get();
+            if (beanInfo != null) all.put(each.getKey(), beanInfo);
+        }
+        return Collections.unmodifiableMap(all);
     }
 
     public void cache(MetaBean beanInfo) {
-        cacheById.put(beanInfo.getId(), beanInfo);
-        if (beanInfo.getBeanClass() != null &&
-                beanInfo.getId().equals(beanInfo.getBeanClass().getName())) {
-            cacheByClass.put(beanInfo.getBeanClass(), beanInfo);
+        final Class<?> beanClass = beanInfo.getBeanClass();
+        final boolean byClass =
+              beanClass != null && beanInfo.getId().equals(beanClass.getName());
+        final boolean added;
+        if (beanClass == null || isLocal(beanClass.getClassLoader())) {
+            final MetaBean replaced = cacheById.put(beanInfo.getId(), beanInfo);
+            added = replaced == null;
+            if (replaced != null && replaced != beanInfo) removals.incrementAndGet();
+            if (byClass) cacheByClass.put(beanClass, beanInfo);
+        } else {
+            purge();
+            final ForeignRef ref = new ForeignRef(beanInfo,
+                  byClass ? new ClassKey(beanClass) : null, collected);
+            final ForeignRef replaced = foreignById.put(ref.id, ref);
+            added = replaced == null;
+            if (replaced != null && replaced.get() != beanInfo) removals.incrementAndGet();
+            if (byClass) foreignByClass.put(ref.classKey, ref);
+        }
+        final int max = maxSize;
+        if (max > 0) {
+            addReferrer(beanInfo);
+            if (added) {
+                addSlot(beanInfo.getId());
+                evict(max);
+            }
         }
     }
 
     public void removeFromCache(MetaBean beanInfo) {
+        removals.incrementAndGet();
+        remove(beanInfo);
+        removeSlot(beanInfo.getId());
+    }
+
+    private void remove(MetaBean beanInfo) {
+        if (!referrers.isEmpty()) removeReferrer(beanInfo);
         cacheById.remove(beanInfo.getId());
+        foreignById.remove(beanInfo.getId());
         if (beanInfo.getBeanClass() != null &&
                 beanInfo.getId().equals(beanInfo.getBeanClass().getName())) {
             cacheByClass.remove(beanInfo.getBeanClass());
+            foreignByClass.remove(new ClassKey(beanInfo.getBeanClass()));
         }
     }
 
+    /**
+     * remove the entries of MetaBeans that have been collected
+     * (so that their classes can be unloaded). Not counted as removals:
+     * nobody can have found these MetaBeans before.
+     */
+    private void purge() {
+        Reference<? extends MetaBean> each;
+        boolean purged = false;
+        while ((each = collected.poll()) != null) {
+            final ForeignRef ref = (ForeignRef) each;
+            purged |= foreignById.remove(ref.id, ref);
+            if (ref.classKey != null) foreignByClass.remove(ref.classKey, ref);
+        }
+        if (purged && !slots.isEmpty()) removeSlots();
+    }
+
+    /**
+     * @return true when classes of the loader cannot be unloaded
+     *         as long as this cache exists
+     */
+    private boolean isLocal(ClassLoader loader) {
+        if (loader == null) return true; // bootstrap class loader
+        for (ClassLoader each = MetaBeanCache.class.getClassLoader(); each != null;
+             each = each.getParent()) {
+            if (each == loader) return true;
+        }
+        return false;
+    }
 }
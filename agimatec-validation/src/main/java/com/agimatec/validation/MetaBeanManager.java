@@ -25,13 +25,32 @@ import com.agimatec.validation.xml.XMLMetaBeanLoader;
 import com.agimatec.validation.xml.XMLMetaBeanRegistry;
 import com.agimatec.validation.xml.XMLMetaBeanURLLoader;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Description: Default implementation for the interface to find, register and
  * create MetaBeans. In most situations a single instance of this class is
  * sufficient and you can get this instance from the {@link MetaBeanManagerFactory}.
  * <br/>
+ * MetaBeans found in the cache are returned without locking. Each MetaBean is built
+ * by one thread at a time, other threads requesting the same MetaBean wait for it,
+ * MetaBeans of unrelated types are built concurrently.
+ * The MetaBeans built (including the related MetaBeans built for their
+ * relationships) are cached and visible to other threads only when complete.
+ * <br/>
  * User: roman.stumm <br/>
  * Date: 05.07.2007 <br/>
  * Time: 16:19:43 <br/>
@@ -41,7 +60,65 @@ public class MetaBeanManager implements MetaBeanFinder, XMLMetaBeanRegistry, Met
 
     protected final MetaBeanCache cache = new MetaBeanCache();
     protected final MetaBeanBuilder builder;
-    private boolean complete = false;
+    private volatile boolean complete = false;
+    /** evictions of the cache when it was complete */
+    private volatile long completeEvictions;
+    /** the constructions in progress of the current thread */
+    private final ThreadLocal<Construction> construction = new ThreadLocal<Construction>() {
+        protected Construction initialValue() {
+            return new Construction();
+        }
+    };
+    /**
+     * the outermost constructions in progress by any thread
+     * (key = bean.id or the bean class)
+     */
+    private final ConcurrentMap<Object, FutureTask<MetaBean>> inFlight =
+          new ConcurrentHashMap<Object, FutureTask<MetaBean>>();
+    /** incremented when loaders are added, so that constructions begun before are not cached */
+    private volatile int loaderGeneration;
+    /** MetaBeans read from snapshots instead of building them */
+    private final List<MetaBeanSnapshot.Contents> snapshots =
+          new CopyOnWriteArrayList<MetaBeanSnapshot.Contents>();
+    /** max. number of enriched variants to keep, 0 to keep none */
+    private int maxVariants = 16;
+    /**
+     * results of enrichCopies() by (id, version) of the patches,
+     * the least recently used are removed first
+     */
+    private final Map<List<String>, Variant> variants =
+          new LinkedHashMap<List<String>, Variant>(16, 0.75f, true) {
+              protected boolean removeEldestEntry(Map.Entry<List<String>, Variant> eldest) {
+                  return size() > maxVariants;
+              }
+          };
+    private long variantHits, variantMisses;
+
+    /** the MetaBeans under construction by one thread */
+    private static final class Construction {
+        /** key = bean.id, cached when the outermost construction is complete */
+        private final Map<String, MetaBean> building = new LinkedHashMap<String, MetaBean>();
+        /** number of nested constructions in progress */
+        private int depth;
+        /** loaderGeneration when the outermost construction began */
+        private int generation;
+    }
+
+    /** an enriched variant of the cached MetaBeans */
+    private static final class Variant {
+        /** removal count of the cache when the base was last known to be cached */
+        private volatile long removals;
+        /** the cached MetaBeans the variant was created from */
+        private final Map<String, MetaBean> base;
+        private final Map<String, MetaBean> metaBeans;
+
+        private Variant(long removals, Map<String, MetaBean> base,
+                        Map<String, MetaBean> metaBeans) {
+            this.removals = removals;
+            this.base = base;
+            this.metaBeans = metaBeans;
+        }
+    }
 
     public MetaBeanManager() {
         builder = new MetaBeanBuilder();
@@ -58,6 +135,8 @@ public class MetaBeanManager implements MetaBeanFinder, XMLMetaBeanRegistry, Met
 
     public synchronized void addLoader(XMLMetaBeanLoader loader) {
         builder.addLoader(loader);
+        loaderGeneration++;
+        snapshots.clear(); // built without the new loaders
         cache.clear(); // clear because new loaders can affect ALL MetaBeans already created!
         complete = false;
     }
@@ -70,27 +149,95 @@ public class MetaBeanManager implements MetaBeanFinder, XMLMetaBeanRegistry, Met
         return cache;
     }
 
+    /**
+     * use the MetaBeans of the snapshot instead of building them. Each MetaBean is
+     * verified, read and cached when it is first required and not cached already.
+     *
+     * @param contents - the snapshot, with its dynamic relationships bound to this instance
+     */
+    public void addSnapshot(MetaBeanSnapshot.Contents contents) {
+        snapshots.add(contents);
+    }
+
+    /** @param maxVariants - max. number of results of enrichCopies() to keep (default: 16) */
+    public void setMaxVariants(int maxVariants) {
+        synchronized (variants) {
+            this.maxVariants = maxVariants;
+            if (variants.size() > maxVariants) variants.clear();
+        }
+    }
+
+    public int getMaxVariants() {
+        return maxVariants;
+    }
+
+    /** @return number of enrichCopies() calls answered by a kept result */
+    public long getVariantHitCount() {
+        synchronized (variants) {
+            return variantHits;
+        }
+    }
+
+    /** @return number of enrichCopies() calls with patch ids and versions that were computed */
+    public long getVariantMissCount() {
+        synchronized (variants) {
+            return variantMisses;
+        }
+    }
+
+    /** drop the kept results of enrichCopies() */
+    public void clearVariants() {
+        synchronized (variants) {
+            variants.clear();
+        }
+    }
+
     /**
      * @return all MetaBeans for classes that have a xml descriptor:
      *         key = bean.id, value = MetaBean
      */
     public Map<String, MetaBean> findAll() {
-        if (!complete) {
+        if (!isComplete()) {
+            return buildAll();
+        } else {
+            return cache.findAll();
+        }
+    }
+
+    /** @return true when all MetaBeans are cached and none of them have been evicted */
+    private boolean isComplete() {
+        return complete && completeEvictions == cache.getEvictionCount();
+    }
+
+    private synchronized Map<String, MetaBean> buildAll() {
+        if (!isComplete()) {
             try {
+                final long evictions = cache.getEvictionCount();
                 Map<String, MetaBean> allBuilt = builder.buildAll();
+                Map<String, MetaBean> map = new HashMap<String, MetaBean>(cache.findAll());
+                List<MetaBean> built = new ArrayList<MetaBean>();
                 for (MetaBean meta : allBuilt.values()) {
-                    MetaBean cached = cache.findForId(meta.getId());
-                    if (cached == null) {
-                        cache.cache(meta);
+                    if (!map.containsKey(meta.getId())) {
+                        map.put(meta.getId(), meta);
+                        built.add(meta);
                     }
                 }
-                Map<String, MetaBean> map = cache.findAll();
-                for (Object oentry : map.values()) {
-                    MetaBean meta = (MetaBean) oentry;
+                // link the new MetaBeans before other threads can find them
+                for (MetaBean meta : built) {
                     computeRelationships(meta, map);
                 }
-                complete = true;
-                return map;
+                publish(built, null);
+                // including the MetaBeans built that have been evicted meanwhile
+                for (MetaBean meta : built) {
+                    MetaBean cached = cache.findForId(meta.getId());
+                    if (cached != null) map.put(cached.getId(), cached);
+                }
+                if (evictions == cache.getEvictionCount()) {
+                    completeEvictions = evictions;
+                    complete = true;
+                    return cache.findAll();
+                } // else the cache is too small to hold all of them
+                return Collections.unmodifiableMap(map);
             } catch (RuntimeException e) {
                 throw e; // do not wrap runtime exceptions
             } catch (Exception e) {
@@ -107,15 +254,78 @@ public class MetaBeanManager implements MetaBeanFinder, XMLMetaBeanRegistry, Met
      *         additional the MetaBeans loaded by the given loaders.
      *         The given loaders may also return patches for MetaBeans that have
      *         also been returned by other loaders. The beans with patches for
-     *         references to patched beans will be copied.
+     *         references to patched beans will be copied. The copies share
+     *         the unchanged properties, features and validations with
+     *         the cached MetaBeans, which are returned when unchanged.
+     *         When all patches have an id and a version, the result is kept
+     *         (see {@link #setMaxVariants(int)}) and returned (unmodifiable)
+     *         for the same patches until one of the MetaBeans it was created from
+     *         is removed from the cache or replaced (MetaBeans cached later
+     *         are not contained).
      */
     public Map<String, MetaBean> enrichCopies(XMLMetaBeanInfos... infos) {
-        Map<String, MetaBean> cached = findAll();
+        final List<String> key = variantKey(infos);
+        if (key == null) return enrichCopies(findAll(), infos);
+        final long removals = cache.getRemovalCount();
+        final Map<String, MetaBean> cached = findAll();
+        Variant variant;
+        synchronized (variants) {
+            variant = variants.get(key);
+        }
+        if (variant != null && isCached(variant)) {
+            synchronized (variants) {
+                variantHits++;
+            }
+            return variant.metaBeans;
+        }
+        final Map<String, MetaBean> patched =
+              Collections.unmodifiableMap(enrichCopies(cached, infos));
+        synchronized (variants) {
+            variantMisses++;
+            if (variant != null && variants.get(key) == variant) variants.remove(key);
+            // not when MetaBeans have been removed meanwhile: cached can be stale
+            if (maxVariants > 0 && cache.getRemovalCount() == removals) {
+                variants.put(key, new Variant(removals,
+                      new HashMap<String, MetaBean>(cached), patched));
+            }
+        }
+        return patched;
+    }
+
+    /** @return true when the MetaBeans the variant was created from are still cached */
+    private boolean isCached(Variant variant) {
+        final long removals = cache.getRemovalCount();
+        if (variant.removals == removals) return true;
+        for (Map.Entry<String, MetaBean> each : variant.base.entrySet()) {
+            if (cache.findForId(each.getKey()) != each.getValue()) return false;
+        }
+        variant.removals = removals; // no need to compare them again
+        return true;
+    }
+
+    /** @return the id and version of each patch, null when one of them is unknown */
+    private static List<String> variantKey(XMLMetaBeanInfos... infos) {
+        final List<String> key = new ArrayList<String>(infos.length * 2);
+        for (XMLMetaBeanInfos each : infos) {
+            if (each == null) continue; // no patch
+            if (each.getId() == null || each.getVersion() == null) {
+                return null;
+            } else {
+                key.add(each.getId());
+                key.add(each.getVersion());
+            }
+        }
+        return key;
+    }
+
+    private Map<String, MetaBean> enrichCopies(Map<String, MetaBean> cached,
+                                               XMLMetaBeanInfos... infos) {
         try {
             Map<String, MetaBean> patched = builder.enrichCopies(cached, infos);
-            for (Object oentry : patched.values()) {
-                MetaBean meta = (MetaBean) oentry;
-                computeRelationships(meta, patched);
+            for (Map.Entry<String, MetaBean> entry : patched.entrySet()) {
+                if (entry.getValue() != cached.get(entry.getKey())) { // a copy
+                    computeRelationships(entry.getValue(), patched);
+                }
             }
             return patched;
         } catch (RuntimeException e) {
@@ -125,41 +335,185 @@ public class MetaBeanManager implements MetaBeanFinder, XMLMetaBeanRegistry, Met
         }
     }
 
-    public MetaBean findForId(String beanInfoId) {
+    public MetaBean findForId(final String beanInfoId) {
         MetaBean beanInfo = cache.findForId(beanInfoId);
         if (beanInfo != null) return beanInfo;
-        try {
-            beanInfo = builder.buildForId(beanInfoId);
-            cache.cache(beanInfo);
-            computeRelationships(beanInfo);
-            return beanInfo;
-        } catch (RuntimeException e) {
-            throw e; // do not wrap runtime exceptions
-        } catch (Exception e) {
-            throw new IllegalArgumentException(
-                  "error creating beanInfo with id: " + beanInfoId, e);
+        final Construction current = construction.get();
+        beanInfo = current.building.get(beanInfoId);
+        if (beanInfo != null) return beanInfo;
+        final String message = "error creating beanInfo with id: " + beanInfoId;
+        if (current.depth > 0) { // a related MetaBean
+            beanInfo = readSnapshot(current, beanInfoId, null);
+            if (beanInfo != null) return beanInfo;
+            try {
+                return construct(current, builder.buildForId(beanInfoId));
+            } catch (RuntimeException e) {
+                throw e; // do not wrap runtime exceptions
+            } catch (Exception e) {
+                throw new IllegalArgumentException(message, e);
+            }
         }
+        return buildOnce(beanInfoId, new Callable<MetaBean>() {
+            public MetaBean call() throws Exception {
+                MetaBean beanInfo = cache.findForId(beanInfoId); // built meanwhile?
+                if (beanInfo != null) return beanInfo;
+                final Construction current = construction.get();
+                beanInfo = readSnapshot(current, beanInfoId, null);
+                if (beanInfo != null) return beanInfo;
+                return construct(current, builder.buildForId(beanInfoId));
+            }
+        }, message);
     }
 
-    public MetaBean findForClass(Class clazz) {
+    public MetaBean findForClass(final Class clazz) {
         if (clazz == null) return null;
         MetaBean beanInfo = cache.findForClass(clazz);
         if (beanInfo != null) return beanInfo;
+        final Construction current = construction.get();
+        beanInfo = current.building.get(clazz.getName());
+        if (beanInfo != null && beanInfo.getBeanClass() == clazz) return beanInfo;
+        final String message = "error creating beanInfo for " + clazz;
+        if (current.depth > 0) { // a related MetaBean
+            beanInfo = readSnapshot(current, null, clazz);
+            if (beanInfo != null) return beanInfo;
+            try {
+                return construct(current, builder.buildForClass(clazz));
+            } catch (RuntimeException e) {
+                throw e; // do not wrap runtime exceptions
+            } catch (Exception e) {
+                throw new IllegalArgumentException(message, e);
+            }
+        }
+        return buildOnce(clazz, new Callable<MetaBean>() {
+            public MetaBean call() throws Exception {
+                MetaBean beanInfo = cache.findForClass(clazz); // built meanwhile?
+                if (beanInfo != null) return beanInfo;
+                final Construction current = construction.get();
+                beanInfo = readSnapshot(current, null, clazz);
+                if (beanInfo != null) return beanInfo;
+                return construct(current, builder.buildForClass(clazz));
+            }
+        }, message);
+    }
+
+    /**
+     * build a MetaBean in the current thread or wait until another thread has built it.
+     * Only threads that do not construct MetaBeans themselves wait, so that
+     * two threads can never wait for each other.
+     */
+    private MetaBean buildOnce(Object key, Callable<MetaBean> build, String message) {
+        final FutureTask<MetaBean> task = new FutureTask<MetaBean>(build);
+        FutureTask<MetaBean> running = inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(message, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalArgumentException(message, e.getCause());
+        }
+    }
+
+    /**
+     * compute the relationships of a new MetaBean. The MetaBean is known
+     * to the current thread during the construction (for self-referential types)
+     * and cached for all threads when the outermost construction is complete.
+     * Related MetaBeans are built by the current thread, even when another thread
+     * builds them at the same time, because that thread may wait for this one.
+     */
+    private MetaBean construct(Construction current, MetaBean beanInfo) {
+        if (current.depth == 0) current.generation = loaderGeneration;
+        current.building.put(beanInfo.getId(), beanInfo);
+        current.depth++;
+        boolean built = false;
         try {
-            beanInfo = builder.buildForClass(clazz);
-            cache.cache(beanInfo);
             computeRelationships(beanInfo);
-            return beanInfo;
-        } catch (RuntimeException e) {
-            throw e; // do not wrap runtime exceptions
-        } catch (Exception e) {
-            throw new IllegalArgumentException("error creating beanInfo for " + clazz, e);
+            built = true;
+        } finally {
+            current.depth--;
+            if (current.depth == 0 && !built) {
+                current.building.clear(); // publish nothing
+            }
+        }
+        return current.depth == 0 ? publish(current, beanInfo) : beanInfo;
+    }
+
+    /**
+     * cache the MetaBeans of the outermost construction, unless the loaders
+     * have changed meanwhile
+     *
+     * @return the MetaBean cached for beanInfo
+     */
+    private MetaBean publish(Construction current, MetaBean beanInfo) {
+        MetaBean result = beanInfo;
+        if (current.generation == loaderGeneration) {
+            result = publish(current.building.values(), beanInfo);
+        }
+        current.building.clear();
+        return result;
+    }
+
+    /**
+     * cache the MetaBeans built (and linked) by the current thread. The MetaBeans
+     * of a thread that has been faster are kept, the relationships to the
+     * duplicates built by the current thread are changed to refer to them.
+     *
+     * @return the MetaBean cached for beanInfo
+     */
+    private MetaBean publish(Collection<MetaBean> built, MetaBean beanInfo) {
+        final Map<MetaBean, MetaBean> cachedBefore = new IdentityHashMap<MetaBean, MetaBean>();
+        for (MetaBean each : built) {
+            final MetaBean cached = cache.findForId(each.getId());
+            if (cached != null) cachedBefore.put(each, cached);
+        }
+        for (MetaBean each : built) {
+            if (cachedBefore.containsKey(each)) continue;
+            if (!cachedBefore.isEmpty()) {
+                for (MetaProperty prop : each.getProperties()) {
+                    final MetaBean cached = cachedBefore.get(prop.getMetaBean());
+                    if (cached != null) prop.setMetaBean(cached);
+                }
+            }
+            cache.cache(each);
+        }
+        final MetaBean cached = cachedBefore.get(beanInfo);
+        return cached != null ? cached : beanInfo;
+    }
+
+    /**
+     * @param id    - the id of the MetaBean or null
+     * @param clazz - the class of the MetaBean (when id is null)
+     * @return the MetaBean read from a snapshot (the MetaBeans it refers to are
+     *         read, too), null when the snapshots do not contain a valid MetaBean
+     */
+    private MetaBean readSnapshot(Construction current, String id, Class clazz) {
+        if (current.depth == 0) current.generation = loaderGeneration;
+        for (MetaBeanSnapshot.Contents each : snapshots) {
+            final List<MetaBean> loaded =
+                  id != null ? each.load(id, cache) : each.loadForClass(clazz, cache);
+            if (loaded != null) {
+                for (MetaBean metaBean : loaded) {
+                    current.building.put(metaBean.getId(), metaBean);
+                }
+                return current.depth == 0 ? publish(current, loaded.get(0)) : loaded.get(0);
+            }
         }
+        return null;
     }
 
     /**
-     * must be called AFTER cache.cache()
-     * to avoid endless loop
+     * must be called AFTER the beanInfo is known to
+     * findForId()/findForClass() to avoid endless loop
      */
     protected void computeRelationships(MetaBean beanInfo) {
         for (MetaProperty prop : beanInfo.getProperties()) {
@@ -182,8 +536,9 @@ public class MetaBeanManager implements MetaBeanFinder, XMLMetaBeanRegistry, Met
     private void computeRelationships(MetaBean beanInfo, Map<String, MetaBean> cached) {
         for (MetaProperty prop : beanInfo.getProperties()) {
             String beanRef = (String) prop.getFeature(REF_BEAN_ID);
-            if (beanRef != null) {
-                prop.setMetaBean(cached.get(beanRef));
+            if (beanRef != null && prop.getMetaBean() != cached.get(beanRef)) {
+                // do not modify properties shared with the cached MetaBeans
+                beanInfo.getPropertyForUpdate(prop.getName()).setMetaBean(cached.get(beanRef));
             }
         }
     }
@@ -0,0 +1,506 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation;
+
+import com.agimatec.validation.model.MetaBean;
+import com.agimatec.validation.model.MetaProperty;
+import com.agimatec.validation.util.PrivilegedActions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Description: writes completely built MetaBeans to a stream and reads them back,
+ * so that an application can start without building its metadata again.<br/>
+ * Each MetaBean is written with a fingerprint of its bean class (the class files of
+ * the class and its supertypes). When reading, a MetaBean is only used when the
+ * fingerprint is unchanged and all MetaBeans it refers to can be used, too. MetaBeans
+ * that cannot be written (e.g. because they contain objects that are not serializable)
+ * or cannot be read are left out, they are built again when required.
+ * {@link #open(InputStream, String, MetaBeanFinder, ClassLoader, ObjectResolver)}
+ * verifies and reads each MetaBean only when it is first required.<br/>
+ * Fields and Methods are written by reference, the MetaBeans of dynamic relationships
+ * are bound to the MetaBeanFinder given when reading.
+ * Other objects can be replaced by an {@link ObjectResolver}.<br/>
+ * Copyright: Agimatec GmbH
+ */
+public final class MetaBeanSnapshot {
+    private static final int MAGIC = 0x4d425331;
+    private static final int VERSION = 1;
+
+    /** replaces objects written to a snapshot and completes objects read from it */
+    public interface ObjectResolver {
+        /** @return the object to write instead of obj (may be obj itself or null) */
+        Object replaceObject(Object obj) throws IOException;
+
+        /** @return the object to use instead of obj read (may be obj itself) */
+        Object resolveObject(Object obj) throws IOException;
+    }
+
+    /** an object written by reference */
+    private static final class Ref implements Serializable {
+        private static final int BEAN = 0, DYNAMIC = 1, FIELD = 2, METHOD = 3;
+        private final int kind;
+        private final String name;
+        private final Class<?> declaringClass;
+        private final Class<?>[] parameterTypes;
+
+        private Ref(int kind, String name, Class<?> declaringClass, Class<?>[] parameterTypes) {
+            this.kind = kind;
+            this.name = name;
+            this.declaringClass = declaringClass;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    /** a MetaBean of a snapshot, not read yet */
+    private static final class Entry {
+        private final String className;
+        private final String fingerprint;
+        private final byte[] bytes;
+
+        private Entry(String className, String fingerprint, byte[] bytes) {
+            this.className = className;
+            this.fingerprint = fingerprint;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * the MetaBeans of a snapshot, each one is verified and read when it is first
+     * required, together with the MetaBeans it refers to. Thread-safe.
+     */
+    public static final class Contents {
+        private final MetaBeanFinder finder;
+        private final ClassLoader loader;
+        private final ObjectResolver resolver;
+        /** key = bean.id, removed when read or when it cannot be used */
+        private final Map<String, Entry> entries;
+
+        private Contents(Map<String, Entry> entries, MetaBeanFinder finder,
+                         ClassLoader loader, ObjectResolver resolver) {
+            this.entries = entries;
+            this.finder = finder;
+            this.loader = loader;
+            this.resolver = resolver;
+        }
+
+        /** @return the number of MetaBeans not read yet */
+        public synchronized int size() {
+            return entries.size();
+        }
+
+        /** @return the ids of the MetaBeans not read yet */
+        public synchronized List<String> getIds() {
+            return new ArrayList<String>(entries.keySet());
+        }
+
+        /**
+         * read the MetaBean and the MetaBeans it refers to (unless available already).
+         *
+         * @param available - the MetaBeans that have been read or built before
+         * @return the MetaBeans read, the MetaBean with the id first,
+         *         null when the MetaBean is not in the snapshot or cannot be used
+         */
+        public synchronized List<MetaBean> load(String id, MetaBeanFinder available) {
+            final Map<String, MetaBean> loaded = new LinkedHashMap<String, MetaBean>();
+            final Map<String, MetaBean> found = new HashMap<String, MetaBean>();
+            if (!entries.containsKey(id) || !load(id, loaded, found, available)) return null;
+            found.putAll(loaded);
+            final Map<MetaBean, Object> visited = new IdentityHashMap<MetaBean, Object>();
+            for (MetaBean each : loaded.values()) {
+                link(each, found, visited);
+            }
+            entries.keySet().removeAll(loaded.keySet());
+            return new ArrayList<MetaBean>(loaded.values());
+        }
+
+        /**
+         * read the MetaBean of the class (the MetaBean with the name of the class as id)
+         *
+         * @see #load(String, MetaBeanFinder)
+         */
+        public synchronized List<MetaBean> loadForClass(Class<?> beanClass,
+                                                        MetaBeanFinder available) {
+            final Entry entry = entries.get(beanClass.getName());
+            if (entry == null || !entry.className.equals(beanClass.getName())) return null;
+            final List<MetaBean> loaded = load(beanClass.getName(), available);
+            if (loaded != null && loaded.get(0).getBeanClass() != beanClass) {
+                return null; // another class loader
+            }
+            return loaded;
+        }
+
+        /**
+         * @param found - the MetaBeans referred to that are available
+         * @return false when the MetaBean or one it refers to cannot be used
+         */
+        private boolean load(String id, Map<String, MetaBean> loaded,
+                             Map<String, MetaBean> found, MetaBeanFinder available) {
+            if (loaded.containsKey(id)) return true;
+            final Entry entry = entries.get(id);
+            if (entry == null) return false;
+            if (entry.className.length() > 0) {
+                try {
+                    if (!entry.fingerprint.equals(fingerprint(
+                          Class.forName(entry.className, false, loader)))) {
+                        entries.remove(id);
+                        return false;
+                    }
+                } catch (ClassNotFoundException e) {
+                    entries.remove(id);
+                    return false;
+                }
+            }
+            final Set<String> references;
+            try {
+                final Input input = new Input(entry.bytes, finder, loader, resolver);
+                loaded.put(id, (MetaBean) input.readObject());
+                references = input.references;
+            } catch (IOException e) { // cannot be read: will be built again
+                entries.remove(id);
+                return false;
+            } catch (ClassNotFoundException e) { // dito
+                entries.remove(id);
+                return false;
+            }
+            // a MetaBean can only be used, when the MetaBeans it refers to can be used
+            for (String each : references) {
+                if (loaded.containsKey(each) || found.containsKey(each)) continue;
+                final MetaBean metaBean = available.findForId(each);
+                if (metaBean != null) {
+                    found.put(each, metaBean);
+                } else if (!load(each, loaded, found, available)) {
+                    entries.remove(id);
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** a MetaBean referred to by another MetaBean, replaced after reading all MetaBeans */
+    private static final class Unresolved extends MetaBean {
+        private Unresolved(String id) {
+            setId(id);
+        }
+    }
+
+    private MetaBeanSnapshot() {
+        // no instances
+    }
+
+    /**
+     * write the MetaBeans. Dynamic MetaBeans and MetaBeans that cannot be written
+     * are left out.
+     *
+     * @param metaBeans     - the MetaBeans to write, with their relationships computed
+     * @param configuration - describes the configuration the MetaBeans were built with,
+     *                      the snapshot is only read for the same configuration
+     * @param resolver      - to replace objects written, or null
+     * @return the number of MetaBeans written
+     */
+    public static int write(Collection<MetaBean> metaBeans, String configuration,
+                            OutputStream out, ObjectResolver resolver) throws IOException {
+        final Map<MetaBean, String> known = new IdentityHashMap<MetaBean, String>();
+        for (MetaBean each : metaBeans) {
+            if (!each.isDynamic()) known.put(each, each.getId());
+        }
+        final List<Object[]> blocks = new ArrayList<Object[]>(known.size());
+        for (MetaBean each : known.keySet()) {
+            final String fingerprint = each.getBeanClass() == null ? "" :
+                  fingerprint(each.getBeanClass());
+            if (fingerprint == null) continue;
+            try {
+                blocks.add(new Object[]{each, fingerprint, serialize(each, known, resolver)});
+            } catch (ObjectStreamException e) {
+                // not serializable: will be built again
+            }
+        }
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(configuration);
+        data.writeInt(blocks.size());
+        for (Object[] each : blocks) {
+            final MetaBean metaBean = (MetaBean) each[0];
+            final byte[] bytes = (byte[]) each[2];
+            data.writeUTF(metaBean.getId());
+            data.writeUTF(metaBean.getBeanClass() == null ? "" :
+                  metaBean.getBeanClass().getName());
+            data.writeUTF((String) each[1]);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        data.flush();
+        return blocks.size();
+    }
+
+    /**
+     * read the MetaBeans that are still valid.
+     *
+     * @return the MetaBeans (empty when the snapshot is for another configuration)
+     * @throws IOException when the stream is not a snapshot or cannot be read
+     * @see #open(InputStream, String, MetaBeanFinder, ClassLoader, ObjectResolver)
+     */
+    public static List<MetaBean> read(InputStream in, String configuration,
+                                      MetaBeanFinder finder, ClassLoader loader,
+                                      ObjectResolver resolver) throws IOException {
+        final Contents contents = open(in, configuration, finder, loader, resolver);
+        final MetaBeanCache available = new MetaBeanCache();
+        for (String each : contents.getIds()) {
+            if (available.findForId(each) != null) continue;
+            final List<MetaBean> loaded = contents.load(each, available);
+            if (loaded != null) {
+                for (MetaBean metaBean : loaded) {
+                    available.cache(metaBean);
+                }
+            }
+        }
+        return new ArrayList<MetaBean>(available.findAll().values());
+    }
+
+    /**
+     * read the snapshot without verifying or reading its MetaBeans.
+     *
+     * @param configuration - the snapshot is ignored, when written for another configuration
+     * @param finder        - to find the MetaBeans of dynamic relationships
+     * @param loader        - to load the classes
+     * @param resolver      - to complete objects read, or null
+     * @return the contents (empty when the snapshot is for another configuration)
+     * @throws IOException when the stream is not a snapshot or cannot be read
+     */
+    public static Contents open(InputStream in, String configuration,
+                                MetaBeanFinder finder, ClassLoader loader,
+                                ObjectResolver resolver) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) throw new IOException("not a MetaBean snapshot");
+        final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+        if (data.readInt() == VERSION && data.readUTF().equals(configuration)) {
+            final int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                final String id = data.readUTF();
+                final String className = data.readUTF();
+                final String fingerprint = data.readUTF();
+                final byte[] bytes = new byte[data.readInt()];
+                data.readFully(bytes);
+                entries.put(id, new Entry(className, fingerprint, bytes));
+            }
+        }
+        return new Contents(entries, finder, loader, resolver);
+    }
+
+    /** replace the Unresolved MetaBeans of the relationships */
+    private static void link(MetaBean metaBean, Map<String, MetaBean> found,
+                             Map<MetaBean, Object> visited) {
+        if (visited.put(metaBean, Boolean.TRUE) != null) return;
+        for (MetaProperty each : metaBean.getProperties()) {
+            final MetaBean related = each.getMetaBean();
+            if (related instanceof Unresolved) {
+                each.setMetaBean(found.get(related.getId()));
+            } else if (related != null) {
+                link(related, found, visited);
+            }
+        }
+    }
+
+    private static byte[] serialize(MetaBean metaBean, Map<MetaBean, String> known,
+                                    ObjectResolver resolver) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        final Output output = new Output(bytes, metaBean, known, resolver);
+        output.writeObject(metaBean);
+        output.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return a fingerprint of the class files of the class and its supertypes,
+     *         null when a class file cannot be found
+     */
+    public static String fingerprint(Class<?> beanClass) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        final Set<Class<?>> visited = new HashSet<Class<?>>();
+        try {
+            if (!digest(beanClass, digest, visited)) return null;
+        } catch (IOException e) {
+            return null;
+        }
+        final StringBuilder hex = new StringBuilder(40);
+        for (byte each : digest.digest()) {
+            hex.append(Character.forDigit((each >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(each & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static boolean digest(Class<?> clazz, MessageDigest digest, Set<Class<?>> visited)
+          throws IOException {
+        if (clazz == null || !visited.add(clazz)) return true;
+        final ClassLoader loader = PrivilegedActions.getClassLoader(clazz);
+        if (loader != null) { // classes of the bootstrap loader do not change
+            final InputStream in =
+                  loader.getResourceAsStream(clazz.getName().replace('.', '/') + ".class");
+            if (in == null) return false;
+            try {
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        for (Class<?> each : clazz.getInterfaces()) {
+            if (!digest(each, digest, visited)) return false;
+        }
+        return digest(clazz.getSuperclass(), digest, visited);
+    }
+
+    private static final class Output extends ObjectOutputStream {
+        private final MetaBean root;
+        private final Map<MetaBean, String> known;
+        private final ObjectResolver resolver;
+
+        private Output(OutputStream out, MetaBean root, Map<MetaBean, String> known,
+                       ObjectResolver resolver) throws IOException {
+            super(out);
+            this.root = root;
+            this.known = known;
+            this.resolver = resolver;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof MetaBean && obj != root) {
+                if (((MetaBean) obj).isDynamic()) return new Ref(Ref.DYNAMIC, null, null, null);
+                final String id = known.get(obj);
+                if (id != null) return new Ref(Ref.BEAN, id, null, null);
+            } else if (obj instanceof Field) {
+                final Field field = (Field) obj;
+                return new Ref(Ref.FIELD, field.getName(), field.getDeclaringClass(), null);
+            } else if (obj instanceof Method) {
+                final Method method = (Method) obj;
+                return new Ref(Ref.METHOD, method.getName(), method.getDeclaringClass(),
+                      method.getParameterTypes());
+            }
+            return resolver == null ? obj : resolver.replaceObject(obj);
+        }
+    }
+
+    private static final class Input extends ObjectInputStream {
+        private final MetaBeanFinder finder;
+        private final ClassLoader loader;
+        private final ObjectResolver resolver;
+        /** the ids of the MetaBeans referred to */
+        private final Set<String> references = new HashSet<String>();
+
+        private Input(byte[] bytes, MetaBeanFinder finder, ClassLoader loader,
+                      ObjectResolver resolver) throws IOException {
+            super(new ByteArrayInputStream(bytes));
+            this.finder = finder;
+            this.loader = loader;
+            this.resolver = resolver;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+              throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, loader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc); // primitive types
+            }
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces)
+              throws IOException, ClassNotFoundException {
+            final Class<?>[] classes = new Class<?>[interfaces.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                classes[i] = Class.forName(interfaces[i], false, loader);
+            }
+            try {
+                return Proxy.getProxyClass(loader, classes); // e.g. annotations
+            } catch (IllegalArgumentException e) {
+                return super.resolveProxyClass(interfaces);
+            }
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof Ref) {
+                final Ref ref = (Ref) obj;
+                try {
+                    switch (ref.kind) {
+                        case Ref.BEAN:
+                            references.add(ref.name);
+                            return new Unresolved(ref.name);
+                        case Ref.DYNAMIC:
+                            return new DynamicMetaBean(finder);
+                        case Ref.FIELD:
+                            final Field field = ref.declaringClass.getDeclaredField(ref.name);
+                            PrivilegedActions.setAccessible(field);
+                            return field;
+                        default:
+                            final Method method = ref.declaringClass
+                                  .getDeclaredMethod(ref.name, ref.parameterTypes);
+                            PrivilegedActions.setAccessible(method);
+                            return method;
+                    }
+                } catch (NoSuchFieldException e) {
+                    throw new InvalidObjectException(e.toString());
+                } catch (NoSuchMethodException e) {
+                    throw new InvalidObjectException(e.toString());
+                }
+            }
+            return resolver == null ? obj : resolver.resolveObject(obj);
+        }
+    }
+}
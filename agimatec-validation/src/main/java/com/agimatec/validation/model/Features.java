@@ -38,6 +38,11 @@ public interface Features {
 
         //        String DISPLAY_NAME = "displayName";
         String UNIQUE_KEY = "uniqueKey";
+        /**
+         * VALIDATION: Boolean (or String "true"), TRUE if the state of the beans
+         * cannot change, so that validation results can be reused for equal beans
+         */
+        String IMMUTABLE = "immutable";
     }
 
     /** Features of {@link MetaProperty} */
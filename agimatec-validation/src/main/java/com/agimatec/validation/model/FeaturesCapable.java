@@ -16,51 +16,113 @@
  */
 package com.agimatec.validation.model;
 
-import org.apache.commons.collections.FastHashMap;
-
 import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * Description: abstract superclass of meta objects that support a map of features.<br/>
+ * The features are stored as an array of alternating keys and values, that is
+ * replaced (never modified) when a feature is put. Reads do not lock,
+ * the lookup compares the keys by identity first, so that the constants of
+ * {@link Features} are found without computing equals(), and copies share the
+ * arrays of features and validations until they are changed.<br/>
  * User: roman.stumm <br/>
  * Date: 06.07.2007 <br/>
  * Time: 10:29:57 <br/>
  * Copyright: Agimatec GmbH 2008
  */
 public abstract class FeaturesCapable implements Serializable {
-    private FastHashMap features = new FastHashMap();
+    private static final Object[] NO_FEATURES = new Object[0];
+    private static final Validation[] NO_VALIDATIONS = new Validation[0];
+
+    /** key0, value0, key1, value1, ... (never modified, but replaced) */
+    private volatile Object[] features = NO_FEATURES;
     /** key = validation id, value = the validation */
-    private Validation[] validations = new Validation[0];
+    private Validation[] validations = NO_VALIDATIONS;
 
     public FeaturesCapable() {
-        features.setFast(true);
     }
 
+    /** @return a view of the features, changes write through */
     public Map<String, Object> getFeatures() {
-        return features;
+        return new FeaturesView();
     }
 
+    /**
+     * no-op: reads never lock.
+     * @param fast - ignored
+     */
     public void optimizeRead(boolean fast) {
-        features.setFast(fast);
     }
 
     public <T> T getFeature(String key) {
-        return (T) features.get(key);
+        final Object[] current = features;
+        final int index = indexOf(current, key);
+        return index < 0 ? null : (T) current[index + 1];
     }
 
     public <T> T getFeature(String key, T defaultValue) {
-        final T v = (T) features.get(key);
-        if (v == null) {
-            return (features.containsKey(key)) ? null : defaultValue;
-        } else {
-            return v;
-        }
+        final Object[] current = features;
+        final int index = indexOf(current, key);
+        return index < 0 ? defaultValue : (T) current[index + 1];
     }
 
     /** convenience method. */
     public <T> void putFeature(String key, T value) {
-        features.put(key, value);
+        putFeatureValue(key, value);
+    }
+
+    private synchronized Object putFeatureValue(String key, Object value) {
+        final Object[] current = features;
+        final int index = indexOf(current, key);
+        final Object[] changed;
+        if (index < 0) {
+            changed = new Object[current.length + 2];
+            System.arraycopy(current, 0, changed, 0, current.length);
+            changed[current.length] = key;
+            changed[current.length + 1] = value;
+            features = changed;
+            return null;
+        } else {
+            final Object old = current[index + 1];
+            if (old != value) {
+                changed = current.clone();
+                changed[index + 1] = value;
+                features = changed;
+            }
+            return old;
+        }
+    }
+
+    private synchronized Object removeFeature(Object key) {
+        final Object[] current = features;
+        final int index = indexOf(current, key);
+        if (index < 0) return null;
+        final Object[] changed = current.length == 2 ? NO_FEATURES :
+              new Object[current.length - 2];
+        System.arraycopy(current, 0, changed, 0, index);
+        System.arraycopy(current, index + 2, changed, index, current.length - index - 2);
+        features = changed;
+        return current[index + 1];
+    }
+
+    /** @return the index of the key or -1 */
+    private static int indexOf(Object[] features, Object key) {
+        for (int i = 0; i < features.length; i += 2) {
+            if (features[i] == key) return i;
+        }
+        if (key instanceof String) {
+            final int hash = key.hashCode(); // cached by String
+            for (int i = 0; i < features.length; i += 2) {
+                if (features[i].hashCode() == hash && features[i].equals(key)) return i;
+            }
+        }
+        return -1;
     }
 
     /** create a deep copy! (copy receiver and copy properties) */
@@ -75,10 +137,9 @@ public abstract class FeaturesCapable implements Serializable {
     }
 
     protected <T extends FeaturesCapable> void copyInto(T target) {
-        target.features = (FastHashMap) features.clone();
-        if (validations != null) {
-            target.validations = validations.clone();
-        }
+        // the arrays are never modified, so the copy can share them
+        ((FeaturesCapable) target).features = features;
+        ((FeaturesCapable) target).validations = validations;
     }
 
     public Validation[] getValidations() {
@@ -86,14 +147,10 @@ public abstract class FeaturesCapable implements Serializable {
     }
 
     public void addValidation(Validation validation) {
-        if (validations.length == 0) {
-            validations = new Validation[1];
-        } else {
-            Validation[] newvalidations = new Validation[validations.length + 1];
-            System.arraycopy(validations, 0, newvalidations, 0, validations.length);
-            validations = newvalidations;
-        }
-        validations[validations.length - 1] = validation;
+        Validation[] newvalidations = new Validation[validations.length + 1];
+        System.arraycopy(validations, 0, newvalidations, 0, validations.length);
+        newvalidations[validations.length] = validation;
+        validations = newvalidations;
     }
 
     public boolean hasValidation(Validation aValidation) {
@@ -103,4 +160,109 @@ public abstract class FeaturesCapable implements Serializable {
         }
         return false;
     }
+
+    /** the map returned by getFeatures() */
+    private final class FeaturesView extends AbstractMap<String, Object> {
+        @Override
+        public Object get(Object key) {
+            final Object[] current = features;
+            final int index = indexOf(current, key);
+            return index < 0 ? null : current[index + 1];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(features, key) >= 0;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return putFeatureValue(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return removeFeature(key);
+        }
+
+        @Override
+        public int size() {
+            return features.length / 2;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                public int size() {
+                    return FeaturesView.this.size();
+                }
+
+                public Iterator<Entry<String, Object>> iterator() {
+                    final Object[] current = features;
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next = 0;
+                        private String lastKey;
+
+                        public boolean hasNext() {
+                            return next < current.length;
+                        }
+
+                        public Entry<String, Object> next() {
+                            if (next >= current.length) throw new NoSuchElementException();
+                            lastKey = (String) current[next];
+                            final Entry<String, Object> entry =
+                                  new FeatureEntry(lastKey, current[next + 1]);
+                            next += 2;
+                            return entry;
+                        }
+
+                        public void remove() {
+                            if (lastKey == null) throw new IllegalStateException();
+                            removeFeature(lastKey);
+                            lastKey = null;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /** an entry of the map returned by getFeatures(), setValue() writes through */
+    private final class FeatureEntry implements Map.Entry<String, Object> {
+        private final String key;
+        private Object value;
+
+        private FeatureEntry(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public Object setValue(Object value) {
+            final Object old = this.value;
+            this.value = value;
+            putFeatureValue(key, value);
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            final Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return key.equals(e.getKey()) &&
+                  (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+    }
 }
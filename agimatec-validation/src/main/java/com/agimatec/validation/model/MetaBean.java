@@ -16,11 +16,14 @@
  */
 package com.agimatec.validation.model;
 
-import org.apache.commons.lang.ArrayUtils;
+import java.util.BitSet;
 
 /**
  * Description: the meta description of a bean or class.
  * the class/bean itself can have a map of features and an array of metaproperties.<br/>
+ * Properties are added in amortized constant time. The properties of MetaBeans
+ * with many properties are found by name with a hash index (built when first required),
+ * so the names of the properties must not change after they have been put.<br/>
  * User: roman.stumm <br/>
  * Date: 06.07.2007 <br/>
  * Time: 09:44:31 <br/>
@@ -29,10 +32,28 @@ import org.apache.commons.lang.ArrayUtils;
  * @see MetaProperty
  */
 public class MetaBean extends FeaturesCapable implements Cloneable, Features.Bean {
+    private static final MetaProperty[] NO_PROPERTIES = new MetaProperty[0];
+    /** properties are searched linearly up to this number of properties */
+    private static final int INDEX_THRESHOLD = 8;
+
     private String id;
     private String name;
     private Class beanClass;
-    private MetaProperty[] properties = new MetaProperty[0];
+    /** the properties, followed by spare capacity while properties are added */
+    private volatile MetaProperty[] properties = NO_PROPERTIES;
+    private int propertyCount;
+    /**
+     * open addressing table of (position + 1) of the properties by hash of their names,
+     * null when not yet built
+     */
+    private transient volatile int[] propertyIndex;
+    /**
+     * the positions of the properties shared with the MetaBean this one is an
+     * {@link #overlay()} of, null when no properties are shared
+     */
+    private BitSet sharedProperties;
+    /** compiled lazy from the current state of this MetaBean */
+    private transient ValidationPlan validationPlan;
 
     public String getId() {
         return id;
@@ -58,48 +79,172 @@ public class MetaBean extends FeaturesCapable implements Cloneable, Features.Bea
         this.beanClass = beanClass;
     }
 
+    /**
+     * @return the properties; a trimmed copy while the backing array has spare
+     *         capacity, so that properties can still be added without reallocation
+     */
     public MetaProperty[] getProperties() {
-        return properties;
+        final MetaProperty[] current = properties;
+        return current.length == propertyCount ? current : copyProperties();
+    }
+
+    /** @return a new array with the properties, without spare capacity */
+    private MetaProperty[] copyProperties() {
+        final MetaProperty[] copies = new MetaProperty[propertyCount];
+        System.arraycopy(properties, 0, copies, 0, propertyCount);
+        return copies;
     }
 
     public void setProperties(MetaProperty[] properties) {
+        this.propertyCount = properties.length;
         this.properties = properties;
+        propertyIndex = null;
+        sharedProperties = null;
+        validationPlan = null;
     }
 
     public MetaProperty getProperty(String name) {
-        for (MetaProperty p : properties) {
-            if (name.equals(p.getName())) return p;
+        final int idx = indexOfProperty(name);
+        return idx < 0 ? null : properties[idx];
+    }
+
+    /**
+     * get a property to modify it. A property this MetaBean shares with
+     * another one (see {@link #overlay()}) is copied first.
+     *
+     * @return the property (owned by this MetaBean) or null
+     */
+    public MetaProperty getPropertyForUpdate(String name) {
+        final int idx = indexOfProperty(name);
+        if (idx < 0) return null;
+        if (sharedProperties != null && sharedProperties.get(idx)) {
+            properties[idx] = properties[idx].copy();
+            sharedProperties.clear(idx);
+            validationPlan = null;
+        }
+        return properties[idx];
+    }
+
+    /** @return the position of the property with the name or -1 */
+    private int indexOfProperty(String name) {
+        final MetaProperty[] current = properties;
+        final int count = propertyCount;
+        if (count <= INDEX_THRESHOLD) {
+            for (int i = 0; i < count; i++) {
+                if (name.equals(current[i].getName())) return i;
+            }
+            return -1;
         }
-        return null;
+        int[] index = propertyIndex;
+        if (index == null) {
+            index = buildIndex(current, count);
+            propertyIndex = index;
+        }
+        final int mask = index.length - 1;
+        for (int i = hash(name) & mask; index[i] != 0; i = (i + 1) & mask) {
+            if (name.equals(current[index[i] - 1].getName())) return index[i] - 1;
+        }
+        return -1;
+    }
+
+    /** @return a table with at least twice as many slots as properties */
+    private static int[] buildIndex(MetaProperty[] properties, int count) {
+        final int[] index = new int[Integer.highestOneBit(count) << 2];
+        for (int i = 0; i < count; i++) {
+            addToIndex(index, properties, i);
+        }
+        return index;
+    }
+
+    /** add the property at the position, unless a property with its name is indexed */
+    private static void addToIndex(int[] index, MetaProperty[] properties, int position) {
+        final String name = properties[position].getName();
+        if (name == null) return;
+        final int mask = index.length - 1;
+        int i = hash(name) & mask;
+        for (; index[i] != 0; i = (i + 1) & mask) {
+            if (name.equals(properties[index[i] - 1].getName())) return;
+        }
+        index[i] = position + 1;
+    }
+
+    private static int hash(String name) {
+        final int h = name.hashCode();
+        return h ^ (h >>> 16);
     }
 
     /** @return true when at least one of the properties is a relationship */
     public boolean hasRelationships() {
-        for (MetaProperty p : properties) {
-            if (p.isRelationship()) return true;
+        final MetaProperty[] current = properties;
+        for (int i = 0; i < propertyCount; i++) {
+            if (current[i].isRelationship()) return true;
         }
         return false;
     }
 
     public boolean hasProperties() {
-        return properties.length > 0;
+        return propertyCount > 0;
     }
 
     public void putProperty(String name, MetaProperty property) {
-        final MetaProperty oldProperty = getProperty(name);
-        if (oldProperty == null) { // add
-            if (properties.length == 0) {
-                properties = new MetaProperty[1];
-            } else {
-                MetaProperty[] newproperties = new MetaProperty[properties.length + 1];
-                System.arraycopy(properties, 0, newproperties, 0, properties.length);
-                properties = newproperties;
+        final int idx = indexOfProperty(name);
+        if (idx < 0) { // add
+            MetaProperty[] current = properties;
+            if (propertyCount == current.length) { // grow
+                final MetaProperty[] grown =
+                      new MetaProperty[Math.max(4, propertyCount + (propertyCount >> 1))];
+                System.arraycopy(current, 0, grown, 0, propertyCount);
+                current = grown;
+            }
+            current[propertyCount] = property;
+            propertyCount++;
+            properties = current;
+            final int[] index = propertyIndex;
+            if (index != null) {
+                if (propertyCount * 2 > index.length) {
+                    propertyIndex = null; // too small: build again when required
+                } else {
+                    addToIndex(index, current, propertyCount - 1);
+                }
             }
-            properties[properties.length - 1] = property;
         } else { // replace
-            int idx = ArrayUtils.indexOf(properties, oldProperty);
+            final MetaProperty oldProperty = properties[idx];
             properties[idx] = property;
+            if (sharedProperties != null) sharedProperties.clear(idx);
+            if (oldProperty.getName() == null ||
+                  !oldProperty.getName().equals(property.getName())) {
+                propertyIndex = null;
+            }
+        }
+        validationPlan = null;
+    }
+
+    @Override
+    public void addValidation(Validation validation) {
+        super.addValidation(validation);
+        validationPlan = null;
+    }
+
+    /**
+     * The plan is compiled when it is first requested. Changes of this
+     * MetaBean invalidate it, but changes of its MetaProperties do not:
+     * invoke {@link #resetValidationPlan()} after modifying validations or
+     * relationships of a property of a MetaBean that has already been used.
+     *
+     * @return the compiled plan to validate instances of this MetaBean
+     */
+    public ValidationPlan getValidationPlan() {
+        ValidationPlan plan = validationPlan;
+        if (plan == null) { // immutable instance, no need to synchronize
+            plan = new ValidationPlan(this);
+            validationPlan = plan;
         }
+        return plan;
+    }
+
+    /** drop the compiled plan, so that it will be compiled again when required */
+    public void resetValidationPlan() {
+        validationPlan = null;
     }
 
     public String toString() {
@@ -111,16 +256,51 @@ public class MetaBean extends FeaturesCapable implements Cloneable, Features.Bea
     protected <T extends FeaturesCapable> void copyInto(T target) {
         super.copyInto(target);
         final MetaBean copy = (MetaBean) target;
-        if (properties != null) {
-            copy.properties = properties.clone();
-            for (int i = copy.properties.length - 1; i >= 0; i--) {
-                copy.properties[i] = copy.properties[i].copy();
-            }
+        copy.validationPlan = null;
+        final MetaProperty[] copies = copyProperties();
+        for (int i = copies.length - 1; i >= 0; i--) {
+            copies[i] = copies[i].copy();
         }
+        copy.properties = copies;
+        copy.propertyIndex = null; // modified when properties are added
+        copy.sharedProperties = null;
+    }
+
+    /**
+     * create a copy that shares the properties, features and validations with this
+     * MetaBean (copy on write): features and validations of the copy can be changed
+     * directly, properties must be obtained by {@link #getPropertyForUpdate(String)}
+     * to change them. Changes of the properties of this MetaBean are visible in the
+     * copy as long as the copy shares them.
+     *
+     * @return the copy
+     */
+    public MetaBean overlay() {
+        final MetaBean copy;
+        try {
+            copy = (MetaBean) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("cannot clone() " + this, e);
+        }
+        super.copyInto(copy);
+        copy.validationPlan = null;
+        copy.properties = copyProperties();
+        copy.propertyIndex = null; // modified when properties are added
+        copy.sharedProperties = new BitSet(propertyCount);
+        copy.sharedProperties.set(0, propertyCount);
+        return copy;
     }
 
     public MetaBean resolveMetaBean(Object bean) {
         return bean == null || bean == beanClass || beanClass.isInstance(bean) ? this : null;
     }
 
+    /**
+     * @return true when the metaBean is resolved at runtime from the bean,
+     *         see {@link #resolveMetaBean(Object)}
+     */
+    public boolean isDynamic() {
+        return false;
+    }
+
 }
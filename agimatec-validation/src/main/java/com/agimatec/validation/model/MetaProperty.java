@@ -16,6 +16,8 @@
  */
 package com.agimatec.validation.model;
 
+import com.agimatec.validation.util.PropertyAccess;
+
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 
@@ -32,10 +34,19 @@ import java.lang.reflect.Type;
  */
 public class MetaProperty extends FeaturesCapable
       implements Cloneable, Features.Property {
+    /** the maximum number of bean classes for which getPropertyAccess() keeps the access */
+    private static final int MAX_PROPERTY_ACCESSES = 8;
+    private static final PropertyAccess[] NO_PROPERTY_ACCESSES = new PropertyAccess[0];
+
     private String name;
 
     private Type type;
     private MetaBean metaBean;
+    /**
+     * access to the value per bean class, most recently created last
+     * (never modified, but replaced, null after deserialization)
+     */
+    private transient volatile PropertyAccess[] propertyAccesses = NO_PROPERTY_ACCESSES;
 
     public MetaProperty() {
     }
@@ -95,6 +106,41 @@ public class MetaProperty extends FeaturesCapable
 
     public void setName(String name) {
         this.name = name;
+        propertyAccesses = NO_PROPERTY_ACCESSES;
+    }
+
+    /**
+     * get a PropertyAccess for this property. The instance is reused for all beans
+     * of the same class (for up to 8 classes), so that the getter or field
+     * must not be determined again for each bean.
+     *
+     * @param beanClass - the class of the bean that contains the property
+     * @return a PropertyAccess to the value of this property in instances of beanClass
+     */
+    public PropertyAccess getPropertyAccess(Class beanClass) {
+        final PropertyAccess[] current = propertyAccesses;
+        if (current != null) {
+            for (PropertyAccess each : current) {
+                if (each.getBeanClass() == beanClass) return each;
+            }
+        }
+        return addPropertyAccess(beanClass);
+    }
+
+    private synchronized PropertyAccess addPropertyAccess(Class beanClass) {
+        final PropertyAccess[] current =
+              propertyAccesses == null ? NO_PROPERTY_ACCESSES : propertyAccesses;
+        for (PropertyAccess each : current) { // added by another thread?
+            if (each.getBeanClass() == beanClass) return each;
+        }
+        final PropertyAccess access = new PropertyAccess(beanClass, name);
+        // when full, drop the access created first
+        final int kept = Math.min(current.length, MAX_PROPERTY_ACCESSES - 1);
+        final PropertyAccess[] changed = new PropertyAccess[kept + 1];
+        System.arraycopy(current, current.length - kept, changed, 0, kept);
+        changed[kept] = access;
+        propertyAccesses = changed;
+        return access;
     }
 
     public String toString() {
@@ -0,0 +1,201 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.model;
+
+import com.agimatec.validation.util.AccessStrategy;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description: the compiled form of a {@link MetaBean} used by the
+ * {@link com.agimatec.validation.BeanValidator}: flat arrays with the
+ * properties that have validations, the bean-level validations and the
+ * relationships to cascade into. Properties without validations and
+ * without relationship do not appear in the plan.<br/>
+ * this instance is immutable, except for the lazily computed acyclic flag!<br/>
+ * Copyright: Agimatec GmbH
+ */
+public final class ValidationPlan {
+    private static final MetaProperty[] NO_PROPERTIES = new MetaProperty[0];
+    private static final Cascade[] NO_CASCADES = new Cascade[0];
+
+    private final MetaProperty[] constrainedProperties;
+    private final Validation[] beanValidations;
+    private final Cascade[] cascades;
+    private final MetaBean metaBean;
+    /**
+     * null: not analyzed yet, see isAcyclic().
+     * Also set by the analysis of the plans of other metaBeans that reach this one.
+     */
+    private volatile Boolean acyclic;
+
+    /** a relationship to validate the target bean(s) of */
+    public static final class Cascade {
+        private final MetaProperty property;
+        private final AccessStrategy[] accesses;
+
+        Cascade(MetaProperty property, AccessStrategy[] accesses) {
+            this.property = property;
+            this.accesses = accesses;
+        }
+
+        public MetaProperty getProperty() {
+            return property;
+        }
+
+        /**
+         * @return the feature {@link Features.Property#REF_CASCADE} or null,
+         *         when the property value must be accessed by its name
+         */
+        public AccessStrategy[] getAccesses() {
+            return accesses;
+        }
+    }
+
+    /** compile the plan from the current state of the metaBean */
+    public ValidationPlan(MetaBean metaBean) {
+        this.metaBean = metaBean;
+        List<MetaProperty> constrained = null;
+        List<Cascade> related = null;
+        for (MetaProperty prop : metaBean.getProperties()) {
+            if (prop.getValidations().length > 0) {
+                if (constrained == null) constrained = new ArrayList<MetaProperty>();
+                constrained.add(prop);
+            }
+            AccessStrategy[] access = prop.getFeature(Features.Property.REF_CASCADE);
+            if (access != null || prop.getMetaBean() != null) {
+                if (related == null) related = new ArrayList<Cascade>();
+                related.add(new Cascade(prop, access));
+            }
+        }
+        constrainedProperties = constrained == null ? NO_PROPERTIES :
+              constrained.toArray(new MetaProperty[constrained.size()]);
+        cascades = related == null ? NO_CASCADES :
+              related.toArray(new Cascade[related.size()]);
+        beanValidations = metaBean.getValidations();
+    }
+
+    /** @return the properties that have at least one validation */
+    public MetaProperty[] getConstrainedProperties() {
+        return constrainedProperties;
+    }
+
+    /** @return the bean-level validations */
+    public Validation[] getBeanValidations() {
+        return beanValidations;
+    }
+
+    /** @return the relationships with cascade validation */
+    public Cascade[] getCascades() {
+        return cascades;
+    }
+
+    /**
+     * Analyze the graph of relationships starting at the metaBean of this plan.
+     * It is acyclic when no metaBean can reach itself and the metaBeans of all
+     * related beans are known in advance: either the relationship has a fixed
+     * metaBean or the declared type of the related bean (or of the elements of
+     * a collection, array or map) is a final class.
+     * The result is computed the first time this method is called, the metadata
+     * is not expected to change afterwards.
+     *
+     * @return true when no bean can be reached twice on one path of the object graph,
+     *         false when there can be cycles or when it cannot be proven
+     */
+    public boolean isAcyclic() {
+        Boolean result = acyclic;
+        if (result == null) {
+            result = isAcyclic(metaBean, new IdentityHashMap<MetaBean, Boolean>());
+            acyclic = result;
+        }
+        return result;
+    }
+
+    /**
+     * @param visited - Boolean.FALSE for the metaBeans on the current path,
+     *                Boolean.TRUE for the metaBeans already proven to be acyclic
+     */
+    private static boolean isAcyclic(MetaBean metaBean, Map<MetaBean, Boolean> visited) {
+        final ValidationPlan plan = metaBean.getValidationPlan();
+        if (plan.acyclic != null) return plan.acyclic;
+        final Boolean state = visited.get(metaBean);
+        if (state != null) return state;
+        visited.put(metaBean, Boolean.FALSE);
+        for (Cascade cascade : plan.cascades) {
+            final MetaProperty prop = cascade.getProperty();
+            if (prop.getMetaBean() == null) return false;
+            if (cascade.getAccesses() == null) {
+                if (!isAcyclic(prop.getMetaBean(), prop.getType(), visited)) return false;
+            } else {
+                for (AccessStrategy each : cascade.getAccesses()) {
+                    if (!isAcyclic(prop.getMetaBean(), each.getJavaType(), visited)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        visited.put(metaBean, Boolean.TRUE);
+        plan.acyclic = Boolean.TRUE;
+        return true;
+    }
+
+    private static boolean isAcyclic(MetaBean related, Type type,
+                                     Map<MetaBean, Boolean> visited) {
+        if (!related.isDynamic()) return isAcyclic(related, visited);
+        // the metaBean is determined at runtime from the class of the bean
+        final Class<?> beanClass = getBeanClass(type);
+        if (beanClass == null || !Modifier.isFinal(beanClass.getModifiers())) return false;
+        final MetaBean resolved = related.resolveMetaBean(beanClass);
+        return resolved != null && isAcyclic(resolved, visited);
+    }
+
+    /**
+     * @return the class of the related bean(s), the element type for arrays,
+     *         collections and maps or null when unknown
+     */
+    private static Class<?> getBeanClass(Type type) {
+        Type elementType = type;
+        if (type instanceof ParameterizedType) {
+            final ParameterizedType ptype = (ParameterizedType) type;
+            final Class<?> rawType = (Class<?>) ptype.getRawType();
+            if (Map.class.isAssignableFrom(rawType)) {
+                elementType = ptype.getActualTypeArguments().length == 2 ?
+                      ptype.getActualTypeArguments()[1] : null;
+            } else if (Iterable.class.isAssignableFrom(rawType)) {
+                elementType = ptype.getActualTypeArguments().length == 1 ?
+                      ptype.getActualTypeArguments()[0] : null;
+            } else {
+                elementType = rawType;
+            }
+        } else if (type instanceof Class && ((Class) type).isArray()) {
+            elementType = ((Class) type).getComponentType();
+        }
+        if (!(elementType instanceof Class)) return null;
+        final Class<?> beanClass = (Class<?>) elementType;
+        if (beanClass.isArray() || Map.class.isAssignableFrom(beanClass) ||
+              Iterable.class.isAssignableFrom(beanClass)) {
+            return null;
+        }
+        return beanClass;
+    }
+}
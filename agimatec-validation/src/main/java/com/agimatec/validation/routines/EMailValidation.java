@@ -19,6 +19,7 @@ package com.agimatec.validation.routines;
 import com.agimatec.validation.model.Validation;
 import com.agimatec.validation.model.ValidationContext;
 
+import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,7 +31,7 @@ import java.util.regex.Pattern;
  * Time: 16:51:16 <br/>
  * Copyright: Agimatec GmbH 2008
  */
-public class EMailValidation implements Validation {
+public class EMailValidation implements Validation, Serializable {
     private static String ATOM =
             "[^\\x00-\\x1F^\\(^\\)^\\<^\\>^\\@^\\,^\\;^\\:^\\\\^\\\"^\\.^\\[^\\]^\\s]";
     private static String DOMAIN = "(" + ATOM + "+(\\." + ATOM + "+)*";
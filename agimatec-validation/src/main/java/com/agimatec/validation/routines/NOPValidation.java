@@ -19,6 +19,8 @@ package com.agimatec.validation.routines;
 import com.agimatec.validation.model.Validation;
 import com.agimatec.validation.model.ValidationContext;
 
+import java.io.Serializable;
+
 /**
  * Description: DO NOTHING VALIDATION (can be used to turn off standard validation)<br/>
  * User: roman.stumm <br/>
@@ -26,7 +28,7 @@ import com.agimatec.validation.model.ValidationContext;
  * Time: 16:51:28 <br/>
  * Copyright: Agimatec GmbH 2008
  */
-public class NOPValidation implements Validation {
+public class NOPValidation implements Validation, Serializable {
 
     public void validate(ValidationContext context) {
         // do nothing
@@ -23,6 +23,7 @@ import com.agimatec.validation.model.ValidationContext;
 import static com.agimatec.validation.routines.Reasons.*;
 import com.agimatec.validation.xml.XMLMetaValue;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Date;
 import java.util.regex.Pattern;
@@ -37,7 +38,7 @@ import java.util.regex.PatternSyntaxException;
  * Time: 12:41:06 <br/>
  * Copyright: Agimatec GmbH 2008
  */
-public class StandardValidation implements Validation {
+public class StandardValidation implements Validation, Serializable {
     /** key for this validation in the validation list of the beanInfos */
     public String getValidationId() {
         return "standard";
@@ -16,6 +16,7 @@
  */
 package com.agimatec.validation.util;
 
+import java.io.Serializable;
 import java.lang.annotation.ElementType;
 import java.lang.reflect.Type;
 
@@ -27,7 +28,7 @@ import java.lang.reflect.Type;
  * Time: 12:12:08 <br/>
  * Copyright: Agimatec GmbH
  */
-public abstract class AccessStrategy {
+public abstract class AccessStrategy implements Serializable {
     /**
      * get the value from the given instance.
      * @param instance
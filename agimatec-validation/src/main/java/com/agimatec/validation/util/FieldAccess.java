@@ -19,10 +19,11 @@ package com.agimatec.validation.util;
 import java.lang.annotation.ElementType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
-import java.security.PrivilegedAction;
 
 /**
- * Description: direct field access.<br/>
+ * Description: direct field access.
+ * The field is made accessible once, so that reading the value
+ * requires no further security checks.<br/>
  * User: roman <br/>
  * Date: 29.10.2009 <br/>
  * Time: 12:13:08 <br/>
@@ -38,21 +39,15 @@ public class FieldAccess extends AccessStrategy {
 
     public FieldAccess(Field field) {
         this.field = field;
-        if(!field.isAccessible()) {
-            field.setAccessible(true);
-        }
+        PrivilegedActions.setAccessible(field);
     }
 
     public Object get(final Object instance) {
-        return PrivilegedActions.run(new PrivilegedAction<Object>() {
-            public Object run() {
-                try {
-                    return field.get(instance);
-                } catch (IllegalAccessException e) {
-                    throw new IllegalArgumentException(e);
-                }
-            }
-        });
+        try {
+            return field.get(instance);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
     }
 
     public ElementType getElementType() {
@@ -0,0 +1,189 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Description: a compact set of objects, compared by identity, with a set of
+ * marks (small int numbers, e.g. the index of a group) for each object.
+ * Used to keep track of the objects already validated. The objects and
+ * their marks are held in flat arrays (open addressing, linear probing),
+ * so that no entry objects are allocated. null is not allowed as object.<br/>
+ * this instance is not thread-safe!<br/>
+ * Copyright: Agimatec GmbH
+ */
+public final class IdentityMarkSet {
+    private static final int MIN_CAPACITY = 16;
+
+    /** the objects, null = free slot. capacity is a power of 2 */
+    private Object[] keys;
+    /** the marks of keys[i] are in marks[i * words] .. marks[i * words + words - 1] */
+    private long[] marks;
+    /** number of longs per object for the marks */
+    private int words = 1;
+    private int size;
+
+    public IdentityMarkSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public IdentityMarkSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 2 < expectedSize * 3) capacity <<= 1;
+        keys = new Object[capacity];
+        marks = new long[capacity];
+    }
+
+    /**
+     * add the object (when not contained) and the mark for it.
+     *
+     * @param mark - a number >= 0
+     * @return true when the object did not have the mark before
+     */
+    public boolean mark(Object key, int mark) {
+        final int word = mark >>> 6;
+        if (word >= words) widen(word + 1);
+        int slot = slotOf(key);
+        if (keys[slot] == null) {
+            if ((size + 1) * 3 > keys.length * 2) {
+                rehash(keys.length << 1);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        final int index = slot * words + word;
+        final long bit = 1L << mark;
+        if ((marks[index] & bit) != 0) return false;
+        marks[index] |= bit;
+        return true;
+    }
+
+    /** @return true when the object is contained (with any mark) */
+    public boolean contains(Object key) {
+        return keys[slotOf(key)] != null;
+    }
+
+    /** @return true when the object is contained with the mark */
+    public boolean isMarked(Object key, int mark) {
+        final int word = mark >>> 6;
+        if (word >= words) return false;
+        final int slot = slotOf(key);
+        return keys[slot] != null && (marks[slot * words + word] & (1L << mark)) != 0;
+    }
+
+    /** @return number of objects in this set */
+    public int size() {
+        return size;
+    }
+
+    /** @return true when the internal tables are larger than required for size objects */
+    public boolean isOversized(int maxSize) {
+        return keys.length * 2 > maxSize * 3 && keys.length > MIN_CAPACITY;
+    }
+
+    /** remove all objects (but keep the size of the internal tables) */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            Arrays.fill(marks, 0L);
+            size = 0;
+        }
+    }
+
+    /** @return a new list with the objects of this set */
+    public List<Object> keys() {
+        List<Object> result = new ArrayList<Object>(size);
+        for (Object each : keys) {
+            if (each != null) result.add(each);
+        }
+        return result;
+    }
+
+    /** @return an independent copy of this set */
+    public IdentityMarkSet copy() {
+        IdentityMarkSet copy = new IdentityMarkSet(MIN_CAPACITY);
+        copy.keys = keys.clone();
+        copy.marks = marks.clone();
+        copy.words = words;
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * add all objects and marks of the other set to this set.
+     *
+     * @param mapping - maps the marks of the other set to the marks of this set:
+     *                mark m of the other set is added as mapping[m]
+     */
+    public void addAll(IdentityMarkSet other, int[] mapping) {
+        final Object[] otherKeys = other.keys;
+        for (int slot = 0; slot < otherKeys.length; slot++) {
+            if (otherKeys[slot] == null) continue;
+            for (int word = 0; word < other.words; word++) {
+                long bits = other.marks[slot * other.words + word];
+                while (bits != 0) {
+                    int mark = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    mark(otherKeys[slot], mapping[mark]);
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    private int slotOf(Object key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        Object each;
+        while ((each = keys[slot]) != null && each != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(Object key) {
+        int h = System.identityHashCode(key);
+        // spread the high bits, because only the low bits select the slot
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash(int capacity) {
+        final Object[] oldKeys = keys;
+        final long[] oldMarks = marks;
+        keys = new Object[capacity];
+        marks = new long[capacity * words];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                System.arraycopy(oldMarks, i * words, marks, slot * words, words);
+            }
+        }
+    }
+
+    private void widen(int newWords) {
+        final long[] newMarks = new long[keys.length * newWords];
+        for (int i = 0; i < keys.length; i++) {
+            System.arraycopy(marks, i * words, newMarks, i * newWords, words);
+        }
+        marks = newMarks;
+        words = newWords;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.util;
+
+import java.util.Arrays;
+
+/**
+ * Description: a compact set of pairs of objects, compared by identity,
+ * e.g. (bean, constraint). Both objects of a pair are held next to each other
+ * in one flat array (open addressing, linear probing). null is allowed for
+ * both objects of a pair.<br/>
+ * this instance is not thread-safe!<br/>
+ * Copyright: Agimatec GmbH
+ */
+public final class IdentityPairSet {
+    private static final int MIN_CAPACITY = 16;
+    /** represents null in the table, where null means: free slot */
+    private static final Object NULL = new Object();
+
+    /** pair i is in table[2 * i] and table[2 * i + 1]. capacity is a power of 2 */
+    private Object[] table;
+    private int size;
+
+    public IdentityPairSet() {
+        table = new Object[MIN_CAPACITY * 2];
+    }
+
+    /** @return true when the pair was not contained before */
+    public boolean add(Object first, Object second) {
+        first = maskNull(first);
+        second = maskNull(second);
+        int index = indexOf(first, second);
+        if (table[index] != null) return false;
+        if ((size + 1) * 3 > table.length) { // load factor 2/3 of table.length / 2
+            rehash(table.length << 1);
+            index = indexOf(first, second);
+        }
+        table[index] = first;
+        table[index + 1] = second;
+        size++;
+        return true;
+    }
+
+    public boolean contains(Object first, Object second) {
+        return table[indexOf(maskNull(first), maskNull(second))] != null;
+    }
+
+    /** @return number of pairs in this set */
+    public int size() {
+        return size;
+    }
+
+    /** @return true when the internal table is larger than required for size pairs */
+    public boolean isOversized(int maxSize) {
+        return table.length > maxSize * 3 && table.length > MIN_CAPACITY * 2;
+    }
+
+    /** remove all pairs (but keep the size of the internal table) */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(table, null);
+            size = 0;
+        }
+    }
+
+    /** @return an independent copy of this set */
+    public IdentityPairSet copy() {
+        IdentityPairSet copy = new IdentityPairSet();
+        copy.table = table.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /** add all pairs of the other set to this set */
+    public void addAll(IdentityPairSet other) {
+        final Object[] otherTable = other.table;
+        for (int i = 0; i < otherTable.length; i += 2) {
+            if (otherTable[i] != null) {
+                add(unmaskNull(otherTable[i]), unmaskNull(otherTable[i + 1]));
+            }
+        }
+    }
+
+    private int indexOf(Object first, Object second) {
+        final int mask = (table.length >> 1) - 1;
+        int h = System.identityHashCode(first) * 31 + System.identityHashCode(second);
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (table[slot << 1] != null &&
+              (table[slot << 1] != first || table[(slot << 1) + 1] != second)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot << 1;
+    }
+
+    private void rehash(int length) {
+        final Object[] oldTable = table;
+        table = new Object[length];
+        for (int i = 0; i < oldTable.length; i += 2) {
+            if (oldTable[i] != null) {
+                int index = indexOf(oldTable[i], oldTable[i + 1]);
+                table[index] = oldTable[i];
+                table[index + 1] = oldTable[i + 1];
+            }
+        }
+    }
+
+    private static Object maskNull(Object object) {
+        return object == null ? NULL : object;
+    }
+
+    private static Object unmaskNull(Object object) {
+        return object == NULL ? null : object;
+    }
+}
@@ -21,10 +21,11 @@ import java.lang.annotation.ElementType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.security.PrivilegedAction;
 
 /**
- * Description: invoke a zero-argument method (getter)<br/>
+ * Description: invoke a zero-argument method (getter).
+ * The method is made accessible once, so that invoking it
+ * requires no further security checks.<br/>
  * User: roman <br/>
  * Date: 29.10.2009 <br/>
  * Time: 12:12:46 <br/>
@@ -45,9 +46,7 @@ public class MethodAccess extends AccessStrategy {
     public MethodAccess(String propertyName, Method method) {
         this.method = method;
         this.propertyName = propertyName;
-        if (!method.isAccessible()) {
-            method.setAccessible(true);
-        }
+        PrivilegedActions.setAccessible(method);
     }
 
     /**
@@ -85,17 +84,13 @@ public class MethodAccess extends AccessStrategy {
     }
 
     public Object get(final Object instance) {
-        return PrivilegedActions.run(new PrivilegedAction<Object>() {
-            public Object run() {
-                try {
-                    return method.invoke(instance);
-                } catch (IllegalAccessException e) {
-                    throw new IllegalArgumentException(e);
-                } catch (InvocationTargetException e) {
-                    throw new IllegalArgumentException(e);
-                }
-            }
-        });
+        try {
+            return method.invoke(instance);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException(e);
+        }
     }
 
     public ElementType getElementType() {
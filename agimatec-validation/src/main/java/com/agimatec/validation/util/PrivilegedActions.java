@@ -17,6 +17,7 @@
 package com.agimatec.validation.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -115,6 +116,23 @@ public class PrivilegedActions {
         }
     }
 
+    /**
+     * make the member accessible (if it is not already),
+     * perform setAccessible() call with AccessController.doPrivileged() if possible.
+     *
+     * @param member - field, method or constructor
+     */
+    public static void setAccessible(final AccessibleObject member) {
+        if (!member.isAccessible()) {
+            run(new PrivilegedAction<Object>() {
+                public Object run() {
+                    member.setAccessible(true);
+                    return null;
+                }
+            });
+        }
+    }
+
     public static Object getAnnotationValue(final Annotation annotation, final String name)
           throws IllegalAccessException, InvocationTargetException {
         return run(new PrivilegedAction() {
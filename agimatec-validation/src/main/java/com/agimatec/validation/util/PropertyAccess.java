@@ -16,6 +16,7 @@
  */
 package com.agimatec.validation.util;
 
+import org.apache.commons.beanutils.DynaBean;
 import org.apache.commons.beanutils.PropertyUtils;
 
 import java.beans.PropertyDescriptor;
@@ -27,7 +28,9 @@ import java.util.Map;
 
 /**
  * Description: Undefined dynamic strategy. Uses PropertyUtils or tries to determine
- * field to access the value<br/>
+ * field to access the value.
+ * For instances of the beanClass the getter or field is determined only once and
+ * then accessed directly with a {@link MethodAccess} or {@link FieldAccess}.<br/>
  * User: roman <br/>
  * Date: 29.10.2009 <br/>
  * Time: 12:27:27 <br/>
@@ -36,7 +39,11 @@ import java.util.Map;
 public class PropertyAccess extends AccessStrategy {
     private final Class beanClass;
     private final String propertyName;
-    private Field rememberField;
+    /**
+     * access for instances of beanClass, determined when first required.
+     * 'this' when the value can only be accessed dynamically (Map, DynaBean, ...)
+     */
+    private transient volatile AccessStrategy resolvedAccess;
 
     public PropertyAccess(Class clazz, String propertyName) {
         this.beanClass = clazz;
@@ -64,50 +71,74 @@ public class PropertyAccess extends AccessStrategy {
         /*if(Map.class.isAssignableFrom(beanClass)) {
             return beanClass. 
         }*/
-        if (rememberField != null) {  // use cached field of previous access
-            return rememberField.getGenericType();
+        final AccessStrategy access = getResolvedAccess();
+        if (access != this) {  // use getter or field of the beanClass
+            return access.getJavaType();
+        }
+        return Object.class; // unknown type: allow any type?? 
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Class getBeanClass() {
+        return beanClass;
+    }
+
+    public Object get(Object bean) {
+        if (beanClass.isInstance(bean)) {
+            final AccessStrategy access = getResolvedAccess();
+            if (access != this) return access.get(bean);
+        }
+        return getDynamic(bean);
+    }
+
+    private AccessStrategy getResolvedAccess() {
+        AccessStrategy access = resolvedAccess;
+        if (access == null) { // result is always the same, no need to synchronize
+            access = resolveAccess();
+            resolvedAccess = access;
+        }
+        return access;
+    }
+
+    /** find the getter or the field of the beanClass */
+    private AccessStrategy resolveAccess() {
+        if (Map.class.isAssignableFrom(beanClass) ||
+              DynaBean.class.isAssignableFrom(beanClass)) {
+            return this;
         }
         for (PropertyDescriptor each : PropertyUtils.getPropertyDescriptors(beanClass)) {
             if (each.getName().equals(propertyName) && each.getReadMethod() != null) {
-                return each.getReadMethod().getGenericReturnType();
+                return new MethodAccess(propertyName, each.getReadMethod());
             }
         }
         try { // try public field
-            return beanClass.getField(propertyName).getGenericType();
+            return new FieldAccess(beanClass.getField(propertyName));
         } catch (NoSuchFieldException ex2) {
             // search for private/protected field up the hierarchy
             Class theClass = beanClass;
             while (theClass != null) {
                 try {
-                    return theClass.getDeclaredField(propertyName).getGenericType();
+                    return new FieldAccess(theClass.getDeclaredField(propertyName));
                 } catch (NoSuchFieldException ex3) {
                     // do nothing
                 }
                 theClass = theClass.getSuperclass();
             }
         }
-        return Object.class; // unknown type: allow any type?? 
-    }
-
-    public String getPropertyName() {
-        return propertyName;
+        return this;
     }
 
-    public Object get(Object bean) {
+    /** access the value of a bean that is no instance of the beanClass */
+    private Object getDynamic(Object bean) {
         try {
-            if (rememberField != null) {  // cache field of previous access
-                return rememberField.get(bean);
-            }
-
             try {   // try public method
                 return getProperty(bean, propertyName);
             } catch (NoSuchMethodException ex) {
-                Object value;
                 try { // try public field
-                    Field aField = bean.getClass().getField(propertyName);
-                    value = aField.get(bean);
-                    rememberField = aField;
-                    return value;
+                    return bean.getClass().getField(propertyName).get(bean);
                 } catch (NoSuchFieldException ex2) {
                     // search for private/protected field up the hierarchy
                     Class theClass = bean.getClass();
@@ -115,12 +146,8 @@ public class PropertyAccess extends AccessStrategy {
                         try {
                             Field aField = theClass
                                   .getDeclaredField(propertyName);
-                            if (!aField.isAccessible()) {
-                                aField.setAccessible(true);
-                            }
-                            value = aField.get(bean);
-                            rememberField = aField;
-                            return value;
+                            PrivilegedActions.setAccessible(aField);
+                            return aField.get(bean);
                         } catch (NoSuchFieldException ex3) {
                             // do nothing
                         }
@@ -168,7 +168,7 @@ public class XMLMetaBeanFactory implements MetaBeanFactory {
 
     protected MetaProperty enrichElement(MetaBean meta, XMLMetaElement xmlProp,
                                          XMLResult result) throws Exception {
-        MetaProperty prop = meta.getProperty(xmlProp.getName());
+        MetaProperty prop = meta.getPropertyForUpdate(xmlProp.getName());
         if (prop == null) {
             prop = new MetaProperty();
             prop.setName(xmlProp.getName());
@@ -0,0 +1,176 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation;
+
+import com.agimatec.validation.example.BusinessEnum;
+import com.agimatec.validation.example.BusinessObject;
+import com.agimatec.validation.example.BusinessObjectAddress;
+import com.agimatec.validation.model.MetaBean;
+import com.agimatec.validation.model.MetaProperty;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * MetaBeanCache Tester.
+ */
+public class MetaBeanCacheTest extends TestCase {
+    public MetaBeanCacheTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        return new TestSuite(MetaBeanCacheTest.class);
+    }
+
+    public void testCache() throws Exception {
+        MetaBeanCache cache = new MetaBeanCache();
+        MetaBean local = createMetaBean(BusinessObject.class);
+        // the same class, loaded by a class loader that can be unloaded before the cache
+        URL classes = BusinessObject.class.getProtectionDomain().getCodeSource().getLocation();
+        Class<?> foreignClass = new URLClassLoader(new URL[]{classes}, null)
+              .loadClass(BusinessObject.class.getName());
+        assertNotSame(BusinessObject.class, foreignClass);
+        MetaBean foreign = createMetaBean(foreignClass);
+        foreign.setId("foreign");
+        MetaBean foreignById = createMetaBean(foreignClass);
+
+        cache.cache(local);
+        cache.cache(foreign);
+        assertSame(local, cache.findForClass(BusinessObject.class));
+        assertSame(local, cache.findForId(BusinessObject.class.getName()));
+        assertSame(foreign, cache.findForId("foreign"));
+        assertNull(cache.findForClass(foreignClass)); // id is not the class name
+        cache.removeFromCache(local);
+        cache.cache(foreignById);
+        assertNull(cache.findForClass(BusinessObject.class));
+        assertSame(foreignById, cache.findForClass(foreignClass));
+        assertSame(foreignById, cache.findForId(BusinessObject.class.getName()));
+        assertEquals(2, cache.findAll().size());
+
+        cache.removeFromCache(foreignById);
+        assertNull(cache.findForClass(foreignClass));
+        cache.clear();
+        assertTrue(cache.findAll().isEmpty());
+    }
+
+    public void testBoundedAndClearClassLoader() throws Exception {
+        MetaBeanCache cache = new MetaBeanCache();
+        cache.setMaxSize(2);
+        MetaBean first = createMetaBean(BusinessObject.class);
+        MetaBean second = createMetaBean(BusinessObjectAddress.class);
+        MetaBean third = createMetaBean(BusinessEnum.class);
+        cache.cache(first);
+        cache.cache(second);
+        cache.cache(second); // not added again
+        assertEquals(0, cache.getEvictionCount());
+        cache.cache(third);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.findForClass(BusinessObject.class));
+        assertSame(second, cache.findForClass(BusinessObjectAddress.class));
+        assertSame(third, cache.findForClass(BusinessEnum.class));
+
+        URL classes = BusinessObject.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[]{classes}, null);
+        Class<?> foreignClass = loader.loadClass(BusinessObject.class.getName());
+        cache.setMaxSize(0);
+        cache.cache(createMetaBean(foreignClass));
+        assertEquals(3, cache.size());
+        cache.clear(loader);
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+        assertNull(cache.findForClass(foreignClass));
+        cache.clear(BusinessObject.class.getClassLoader());
+        assertEquals(0, cache.size());
+    }
+
+    public void testForeignClassLoaderNotPinned() throws Exception {
+        MetaBeanCache cache = new MetaBeanCache();
+        URL classes = BusinessObject.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[]{classes}, null);
+        cache.cache(createMetaBean(loader.loadClass(BusinessObject.class.getName())));
+        assertEquals(1, cache.size());
+        WeakReference<ClassLoader> loaderRef = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        for (int i = 0; i < 10 && loaderRef.get() != null; i++) {
+            System.gc();
+        }
+        // collected without clear(ClassLoader)
+        assertNull(loaderRef.get());
+        assertTrue(cache.findAll().isEmpty());
+    }
+
+    public void testEvictNotFoundFirst() throws Exception {
+        MetaBeanCache cache = new MetaBeanCache();
+        cache.setMaxSize(2);
+        MetaBean first = createMetaBean(BusinessObject.class);
+        MetaBean second = createMetaBean(BusinessObjectAddress.class);
+        cache.cache(first);
+        cache.cache(second);
+        assertSame(first, cache.findForId(first.getId())); // second chance
+        cache.cache(createMetaBean(BusinessEnum.class));
+        assertSame(first, cache.findForClass(BusinessObject.class));
+        assertNull(cache.findForClass(BusinessObjectAddress.class));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    public void testEvictRemovedAndCachedAgain() throws Exception {
+        MetaBeanCache cache = new MetaBeanCache();
+        cache.setMaxSize(2);
+        MetaBean first = createMetaBean(BusinessObject.class);
+        MetaBean second = createMetaBean(BusinessObjectAddress.class);
+        cache.cache(first);
+        cache.cache(second);
+        cache.removeFromCache(first);
+        cache.cache(first); // cached after second now
+        cache.cache(createMetaBean(BusinessEnum.class));
+        assertSame(first, cache.findForClass(BusinessObject.class));
+        assertNull(cache.findForClass(BusinessObjectAddress.class));
+        assertEquals(2, cache.size());
+    }
+
+    public void testEvictReferrers() throws Exception {
+        MetaBeanCache cache = new MetaBeanCache();
+        cache.setMaxSize(2);
+        MetaBean address = createMetaBean(BusinessObjectAddress.class);
+        MetaBean owner = createMetaBean(BusinessObject.class);
+        MetaProperty prop = new MetaProperty();
+        prop.setName("address");
+        prop.setMetaBean(address);
+        owner.putProperty("address", prop);
+        cache.cache(address);
+        cache.cache(owner);
+        cache.cache(createMetaBean(BusinessEnum.class));
+        // the owner would keep the evicted address alive
+        assertNull(cache.findForClass(BusinessObjectAddress.class));
+        assertNull(cache.findForClass(BusinessObject.class));
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+    }
+
+    private MetaBean createMetaBean(Class<?> beanClass) {
+        MetaBean metaBean = new MetaBean();
+        metaBean.setId(beanClass.getName());
+        metaBean.setBeanClass(beanClass);
+        return metaBean;
+    }
+}
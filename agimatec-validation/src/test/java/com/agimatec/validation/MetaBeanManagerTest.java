@@ -23,16 +23,21 @@ import com.agimatec.validation.json.JSONGenerator;
 import com.agimatec.validation.model.DynaTypeEnum;
 import com.agimatec.validation.model.MetaBean;
 import com.agimatec.validation.model.MetaProperty;
+import com.agimatec.validation.xml.XMLMetaBeanInfos;
 import com.agimatec.validation.xml.XMLMetaBeanURLLoader;
 import freemarker.template.TemplateException;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * MetaBeanManager Tester.
@@ -67,6 +72,68 @@ public class MetaBeanManagerTest extends TestCase {
         assertFalse(mb.getProperty("lastName").isMandatory());
         MetaBean mb2 = mbm.findForClass(BusinessObject.class);
         assertTrue(mb2.getProperty("lastName").isMandatory());
+        // unchanged properties are shared
+        assertSame(mb2.getProperty("firstName"), mb.getProperty("firstName"));
+        assertNotSame(mb2.getProperty("lastName"), mb.getProperty("lastName"));
+        // the address refers to the patched bean
+        MetaBean address = copies.get(mb.getProperty("address").getMetaBean().getId());
+        assertSame(address, mb.getProperty("address").getMetaBean());
+        assertSame(mb, address.getProperty("owner").getMetaBean());
+        MetaBean cachedAddress = mbm.findForId(address.getId());
+        assertNotSame(cachedAddress, address);
+        assertSame(mb2, cachedAddress.getProperty("owner").getMetaBean());
+        assertSame(cachedAddress.getProperty("city"), address.getProperty("city"));
+    }
+
+    public void testFindAllBounded() throws Exception {
+        int size = mbm.findAll().size();
+        mbm.getCache().setMaxSize(1); // smaller than the number of xml MetaBeans
+        Map<String, MetaBean> all = mbm.findAll();
+        assertEquals(size, all.size());
+        assertNotNull(all.get(BusinessObject.class.getName()));
+        assertEquals(size, mbm.findAll().size());
+        assertNotNull(mbm.enrichCopies(new XMLMetaBeanURLLoader(
+              BusinessObject.class.getResource("test-beanInfos-custom.xml")).load())
+              .get(BusinessObject.class.getName()));
+    }
+
+    public void testEnrichCopiesVariants() throws Exception {
+        XMLMetaBeanInfos patch = new XMLMetaBeanURLLoader(
+              BusinessObject.class.getResource("test-beanInfos-custom.xml")).load();
+        Map<String, MetaBean> copies = mbm.enrichCopies(patch);
+        assertNotSame(copies, mbm.enrichCopies(patch)); // no id and version: not kept
+        assertEquals(0, mbm.getVariantMissCount());
+
+        patch.setId("custom");
+        patch.setVersion("1");
+        copies = mbm.enrichCopies(patch);
+        assertSame(copies, mbm.enrichCopies(patch));
+        assertEquals(1, mbm.getVariantHitCount());
+        assertEquals(1, mbm.getVariantMissCount());
+
+        patch.setVersion("2");
+        assertNotSame(copies, mbm.enrichCopies(patch));
+        copies = mbm.enrichCopies(patch);
+        assertEquals(2, mbm.getVariantHitCount());
+
+        // MetaBeans cached later, replaced by the same or evicted do not matter
+        MetaBean other = mbm.findForClass(ArrayList.class);
+        mbm.getCache().cache(mbm.findForClass(BusinessObject.class));
+        mbm.getCache().removeFromCache(other);
+        assertSame(copies, mbm.enrichCopies(patch));
+        assertSame(copies, mbm.enrichCopies(patch));
+        assertEquals(4, mbm.getVariantHitCount());
+
+        // the cached MetaBeans change
+        mbm.getCache().removeFromCache(mbm.findForClass(BusinessObject.class));
+        assertNotSame(copies, mbm.enrichCopies(patch));
+        assertEquals(3, mbm.getVariantMissCount());
+        copies = mbm.enrichCopies(patch);
+        assertSame(copies, mbm.enrichCopies(patch));
+
+        mbm.setMaxVariants(0);
+        copies = mbm.enrichCopies(patch);
+        assertNotSame(copies, mbm.enrichCopies(patch));
     }
 
     public void testCopy() {
@@ -126,6 +193,125 @@ public class MetaBeanManagerTest extends TestCase {
               .getProperty("owner").getMetaBean());
     }
 
+    public void testConcurrentFindForClass() throws Exception {
+        final MetaBean[] found = new MetaBean[8];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[found.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        found[index] = mbm.findForClass(BusinessObject.class);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread each : threads) {
+            each.join(10000);
+        }
+        for (MetaBean each : found) {
+            assertSame(found[0], each);
+        }
+        // the self-referential relationship is complete
+        assertSame(found[0], found[0].getProperty("address").getMetaBean()
+              .getProperty("owner").getMetaBean());
+    }
+
+    public void testConcurrentFindForUnrelatedClasses() throws Exception {
+        final CountDownLatch building = new CountDownLatch(2);
+        final boolean[] concurrent = new boolean[2];
+        final MetaBeanManager manager = new MetaBeanManager(new MetaBeanBuilder() {
+            public MetaBean buildForClass(Class clazz) throws Exception {
+                building.countDown();
+                // wait until the other class is being built, too
+                concurrent[clazz == BusinessEnum.class ? 0 : 1] =
+                      building.await(10, TimeUnit.SECONDS);
+                return super.buildForClass(clazz);
+            }
+        });
+        Thread other = new Thread() {
+            public void run() {
+                manager.findForClass(BusinessEnum.class);
+            }
+        };
+        other.start();
+        MetaBean bean = manager.findForClass(DynaTypeEnum.class);
+        other.join(10000);
+        assertTrue(concurrent[0]);
+        assertTrue(concurrent[1]);
+        assertSame(bean, manager.findForClass(DynaTypeEnum.class));
+        assertNotNull(manager.getCache().findForClass(BusinessEnum.class));
+    }
+
+    public void testRelatedMetaBeanBuiltByOtherThread() throws Exception {
+        final String addressId = "com.agimatec.validation.example.Address";
+        final MetaBean faster = mbm.findForId(addressId);
+        final MetaBeanCache[] cache = new MetaBeanCache[1];
+        MetaBeanManager manager = new MetaBeanManager(new MetaBeanBuilder() {
+            public MetaBean buildForId(String beanInfoId) throws Exception {
+                MetaBean built = super.buildForId(beanInfoId);
+                // another thread caches the related MetaBean meanwhile
+                if (beanInfoId.equals(addressId)) cache[0].cache(faster);
+                return built;
+            }
+        });
+        cache[0] = manager.getCache();
+        manager.addLoader(new XMLMetaBeanURLLoader(
+              BusinessObject.class.getResource("test-beanInfos.xml")));
+        MetaBean bean = manager.findForClass(BusinessObject.class);
+        assertSame(bean, manager.getCache().findForClass(BusinessObject.class));
+        MetaBean address = manager.getCache().findForId(addressId);
+        assertNotNull(address);
+        assertSame(address, bean.getProperty("address").getMetaBean());
+    }
+
+    public void testSnapshot() throws Exception {
+        MetaBean written = mbm.findForClass(BusinessObject.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(MetaBeanSnapshot.write(mbm.getCache().findAll().values(), "test", out,
+              null) >= 2);
+
+        final int[] builds = new int[1];
+        MetaBeanManager manager = new MetaBeanManager(new MetaBeanBuilder() {
+            public MetaBean buildForClass(Class clazz) throws Exception {
+                builds[0]++;
+                return super.buildForClass(clazz);
+            }
+
+            public MetaBean buildForId(String beanInfoId) throws Exception {
+                builds[0]++;
+                return super.buildForId(beanInfoId);
+            }
+        });
+        manager.getBuilder().addLoader(new XMLMetaBeanURLLoader(
+              BusinessObject.class.getResource("test-beanInfos.xml")));
+        MetaBeanSnapshot.Contents contents = MetaBeanSnapshot.open(
+              new ByteArrayInputStream(out.toByteArray()), "test", manager,
+              getClass().getClassLoader(), null);
+        int size = contents.size();
+        manager.addSnapshot(contents);
+        assertEquals(0, manager.getCache().size()); // nothing read yet
+
+        MetaBean bean = manager.findForClass(BusinessObject.class);
+        assertEquals(0, builds[0]);
+        assertNotSame(written, bean);
+        assertEquals(written.getProperties().length, bean.getProperties().length);
+        assertTrue(contents.size() < size);
+        assertSame(bean, manager.getCache().findForClass(BusinessObject.class));
+        // the relationships refer to the MetaBeans read
+        MetaBean address = bean.getProperty("address").getMetaBean();
+        assertEquals(BusinessObjectAddress.class, address.getBeanClass());
+        assertSame(address, manager.findForId(address.getId()));
+        assertSame(bean, address.getProperty("owner").getMetaBean());
+        assertEquals(0, builds[0]);
+    }
+
     public void testJSON() throws Exception {
         MetaBean info = mbm.findForClass(BusinessObject.class);
         MetaBean info2 = info.getProperty("address").getMetaBean();
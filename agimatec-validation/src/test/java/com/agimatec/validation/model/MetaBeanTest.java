@@ -0,0 +1,155 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.model;
+
+import com.agimatec.validation.routines.StandardValidation;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * MetaBean Tester.
+ */
+public class MetaBeanTest extends TestCase {
+    public MetaBeanTest(String name) {
+        super(name);
+    }
+
+    public void testValidationPlan() throws Exception {
+        MetaBean bean = new MetaBean();
+        MetaProperty plain = new MetaProperty();
+        plain.setName("plain");
+        bean.putProperty("plain", plain);
+        MetaProperty constrained = new MetaProperty();
+        constrained.setName("constrained");
+        constrained.addValidation(new StandardValidation());
+        bean.putProperty("constrained", constrained);
+        MetaProperty related = new MetaProperty();
+        related.setName("related");
+        related.setMetaBean(new MetaBean());
+        bean.putProperty("related", related);
+
+        ValidationPlan plan = bean.getValidationPlan();
+        assertSame(plan, bean.getValidationPlan());
+        assertEquals(1, plan.getConstrainedProperties().length);
+        assertSame(constrained, plan.getConstrainedProperties()[0]);
+        assertEquals(1, plan.getCascades().length);
+        assertSame(related, plan.getCascades()[0].getProperty());
+        assertNull(plan.getCascades()[0].getAccesses());
+        assertEquals(0, plan.getBeanValidations().length);
+
+        bean.addValidation(new StandardValidation());
+        assertNotSame(plan, bean.getValidationPlan());
+        assertEquals(1, bean.getValidationPlan().getBeanValidations().length);
+
+        plan = bean.getValidationPlan();
+        plain.addValidation(new StandardValidation());
+        assertSame(plan, bean.getValidationPlan());
+        bean.resetValidationPlan();
+        assertEquals(2, bean.getValidationPlan().getConstrainedProperties().length);
+
+        MetaBean copy = bean.copy();
+        assertNotSame(bean.getValidationPlan(), copy.getValidationPlan());
+        assertSame(copy.getProperty("plain"),
+              copy.getValidationPlan().getConstrainedProperties()[0]);
+    }
+
+    public void testAcyclic() throws Exception {
+        MetaBean a = new MetaBean();
+        MetaBean b = new MetaBean();
+        MetaProperty ab = new MetaProperty();
+        ab.setName("b");
+        ab.setMetaBean(b);
+        a.putProperty("b", ab);
+        assertTrue(a.getValidationPlan().isAcyclic());
+        assertTrue(b.getValidationPlan().isAcyclic());
+
+        MetaBean c = new MetaBean();
+        MetaBean d = new MetaBean();
+        MetaProperty cd = new MetaProperty();
+        cd.setName("d");
+        cd.setMetaBean(d);
+        c.putProperty("d", cd);
+        MetaProperty dc = new MetaProperty();
+        dc.setName("c");
+        dc.setMetaBean(c);
+        d.putProperty("c", dc);
+        assertFalse(c.getValidationPlan().isAcyclic());
+        assertFalse(d.getValidationPlan().isAcyclic());
+    }
+
+    public void testManyProperties() throws Exception {
+        MetaBean bean = new MetaBean();
+        for (int i = 0; i < 300; i++) {
+            MetaProperty prop = new MetaProperty();
+            prop.setName("p" + i);
+            bean.putProperty(prop.getName(), prop);
+            assertSame(prop, bean.getProperty("p" + i));
+            assertEquals("p" + (i / 2), bean.getProperty("p" + (i / 2)).getName());
+        }
+        assertEquals(300, bean.getProperties().length);
+        for (int i = 0; i < 300; i++) {
+            assertSame(bean.getProperties()[i], bean.getProperty("p" + i));
+        }
+        assertNull(bean.getProperty("p300"));
+
+        MetaProperty replacement = new MetaProperty();
+        replacement.setName("p150");
+        bean.putProperty("p150", replacement);
+        assertEquals(300, bean.getProperties().length);
+        assertSame(replacement, bean.getProperty("p150"));
+        assertSame(replacement, bean.getProperties()[150]);
+
+        MetaBean copy = bean.copy();
+        assertNotSame(replacement, copy.getProperty("p150"));
+        assertSame(copy.getProperties()[150], copy.getProperty("p150"));
+        // adding a property to the copy does not change the index of the original
+        MetaProperty added = new MetaProperty();
+        added.setName("added");
+        copy.putProperty("added", added);
+        assertSame(added, copy.getProperty("added"));
+        assertNull(bean.getProperty("added"));
+        for (int i = 0; i < 300; i++) {
+            assertSame(bean.getProperties()[i], bean.getProperty("p" + i));
+        }
+
+        bean.setProperties(new MetaProperty[]{replacement});
+        assertNull(bean.getProperty("p1"));
+        assertSame(replacement, bean.getProperty("p150"));
+        assertEquals(301, copy.getProperties().length);
+    }
+
+    public void testGetPropertiesWhileAdding() {
+        MetaBean bean = new MetaBean();
+        MetaProperty[] previous = bean.getProperties();
+        for (int i = 0; i < 20; i++) {
+            MetaProperty prop = new MetaProperty();
+            prop.setName("p" + i);
+            bean.putProperty(prop.getName(), prop);
+            MetaProperty[] props = bean.getProperties();
+            assertEquals(i + 1, props.length);
+            assertSame(prop, props[i]);
+            assertEquals(i, previous.length); // earlier results are not changed
+            previous = props;
+        }
+        assertSame(bean.getProperty("p7"), bean.getProperties()[7]);
+    }
+
+    public static Test suite() {
+        return new TestSuite(MetaBeanTest.class);
+    }
+}
@@ -17,10 +17,15 @@
 package com.agimatec.validation.model;
 
 import com.agimatec.validation.example.BusinessEnum;
+import com.agimatec.validation.example.BusinessObject;
+import com.agimatec.validation.example.BusinessObjectAddress;
+import com.agimatec.validation.util.PropertyAccess;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.util.Map;
+
 /**
  * MetaProperty Tester.
  *
@@ -45,6 +50,53 @@ public class MetaPropertyTest extends TestCase {
         assertEquals(2, ((DynaTypeEnum)prop.getType()).getEnumConstants().length);
     }
 
+    public void testGetPropertyAccess() throws Exception {
+        MetaProperty prop = new MetaProperty();
+        prop.setName("title");
+        PropertyAccess access = prop.getPropertyAccess(BusinessObject.class);
+        assertSame(access, prop.getPropertyAccess(BusinessObject.class));
+        assertEquals(BusinessObject.class, access.getBeanClass());
+        assertNotSame(access, prop.getPropertyAccess(BusinessObjectAddress.class));
+        BusinessObject object = new BusinessObject();
+        object.setTitle("Dr.");
+        assertEquals("Dr.", prop.getPropertyAccess(BusinessObject.class).get(object));
+        // alternating bean classes keep their accesses
+        PropertyAccess addressAccess = prop.getPropertyAccess(BusinessObjectAddress.class);
+        for (int i = 0; i < 3; i++) {
+            assertSame(access, prop.getPropertyAccess(BusinessObject.class));
+            assertSame(addressAccess, prop.getPropertyAccess(BusinessObjectAddress.class));
+        }
+        prop.setName("address");
+        assertEquals("address", prop.getPropertyAccess(BusinessObject.class).getPropertyName());
+    }
+
+    public void testFeatures() throws Exception {
+        MetaProperty prop = new MetaProperty();
+        prop.putFeature(Features.Property.MANDATORY, Boolean.TRUE);
+        prop.putFeature(Features.Property.MAX_LENGTH, 10);
+        prop.putFeature("custom", null);
+        assertEquals(Boolean.TRUE, prop.getFeature(new String("mandatory")));
+        assertEquals(Integer.valueOf(10), prop.getFeature(Features.Property.MAX_LENGTH));
+        assertNull(prop.getFeature("custom", "default"));
+        assertEquals("default", prop.getFeature("unknown", "default"));
+
+        MetaProperty copy = prop.copy();
+        copy.putFeature(Features.Property.MAX_LENGTH, 20);
+        assertEquals(Integer.valueOf(10), prop.getFeature(Features.Property.MAX_LENGTH));
+        assertEquals(Integer.valueOf(20), copy.getFeature(Features.Property.MAX_LENGTH));
+
+        Map<String, Object> features = copy.getFeatures();
+        assertEquals(3, features.size());
+        assertTrue(features.containsKey("custom"));
+        features.remove(Features.Property.MANDATORY);
+        assertNull(copy.getFeature(Features.Property.MANDATORY));
+        assertEquals(Boolean.TRUE, prop.getFeature(Features.Property.MANDATORY));
+        for (Map.Entry<String, Object> each : features.entrySet()) {
+            if (each.getKey().equals("custom")) each.setValue("value");
+        }
+        assertEquals("value", copy.getFeature("custom"));
+        assertEquals(2, features.size());
+    }
 
     public static Test suite() {
         return new TestSuite(MetaPropertyTest.class);
@@ -0,0 +1,107 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * IdentityMarkSet Tester.
+ */
+public class IdentityMarkSetTest extends TestCase {
+    public IdentityMarkSetTest(String name) {
+        super(name);
+    }
+
+    public void testMark() throws Exception {
+        IdentityMarkSet set = new IdentityMarkSet();
+        String a = new String("a");
+        String equalToA = new String("a");
+        assertTrue(set.mark(a, 0));
+        assertFalse(set.mark(a, 0));
+        assertTrue(set.contains(a));
+        assertFalse(set.contains(equalToA)); // identity, not equals
+        assertTrue(set.mark(a, 70)); // more than 64 marks
+        assertTrue(set.isMarked(a, 0));
+        assertTrue(set.isMarked(a, 70));
+        assertFalse(set.isMarked(a, 1));
+        assertEquals(1, set.size());
+
+        Object[] many = new Object[1000];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = new Object();
+            assertTrue(set.mark(many[i], i % 3));
+        }
+        assertEquals(1001, set.size());
+        for (int i = 0; i < many.length; i++) {
+            assertTrue(set.isMarked(many[i], i % 3));
+            assertFalse(set.isMarked(many[i], (i + 1) % 3));
+        }
+        assertTrue(set.isMarked(a, 70));
+
+        IdentityMarkSet copy = set.copy();
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(a));
+        assertTrue(copy.isMarked(a, 70));
+        assertTrue(copy.isOversized(10));
+
+        set.mark(a, 1);
+        int[] mapping = new int[71];
+        mapping[0] = 2;
+        mapping[1] = 0;
+        mapping[2] = 1;
+        mapping[70] = 3;
+        set.addAll(copy, mapping);
+        assertEquals(1001, set.size());
+        assertTrue(set.isMarked(a, 1));
+        assertTrue(set.isMarked(a, 2));
+        assertTrue(set.isMarked(a, 3));
+        assertTrue(set.isMarked(many[0], 2));
+        assertTrue(set.isMarked(many[1], 0));
+    }
+
+    public void testIdentityPairSet() throws Exception {
+        IdentityPairSet set = new IdentityPairSet();
+        Object bean = new Object();
+        Object constraint = new Object();
+        assertTrue(set.add(bean, constraint));
+        assertFalse(set.add(bean, constraint));
+        assertTrue(set.add(constraint, bean));
+        assertTrue(set.add(null, constraint));
+        assertFalse(set.add(null, constraint));
+        assertTrue(set.contains(null, constraint));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(set.add(new Object(), constraint));
+        }
+        assertEquals(103, set.size());
+        assertTrue(set.contains(bean, constraint));
+
+        IdentityPairSet other = new IdentityPairSet();
+        other.add(bean, bean);
+        other.addAll(set);
+        assertEquals(104, other.size());
+        assertTrue(other.contains(null, constraint));
+        set.clear();
+        assertFalse(set.contains(bean, constraint));
+    }
+
+    public static Test suite() {
+        return new TestSuite(IdentityMarkSetTest.class);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.agimatec.validation.util;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PropertyAccess Tester.
+ */
+public class PropertyAccessTest extends TestCase {
+    public PropertyAccessTest(String name) {
+        super(name);
+    }
+
+    public void testPrivateField() throws Exception {
+        PropertyAccess access = new PropertyAccess(Base.class, "secret");
+        assertEquals("base secret", access.get(new Base()));
+        assertEquals(String.class, access.getJavaType());
+        // declared by the superclass
+        assertEquals("base secret", new PropertyAccess(Sub.class, "secret").get(new Sub()));
+
+        FieldAccess field = new FieldAccess(Base.class.getDeclaredField("secret"));
+        assertEquals("secret", field.getPropertyName());
+        assertEquals("base secret", field.get(new Sub()));
+    }
+
+    public void testInheritedGetter() throws Exception {
+        PropertyAccess access = new PropertyAccess(Sub.class, "name");
+        assertEquals("base name", access.get(new Sub()));
+        assertEquals(String.class, access.getJavaType());
+        assertEquals(Integer.TYPE, new PropertyAccess(Sub.class, "count").getJavaType());
+        assertEquals(3, new PropertyAccess(Sub.class, "count").get(new Sub()));
+
+        MethodAccess method = new MethodAccess(Base.class.getMethod("getName"));
+        assertEquals("name", method.getPropertyName());
+        assertEquals("base name", method.get(new Sub()));
+    }
+
+    public void testOtherClass() throws Exception {
+        PropertyAccess access = new PropertyAccess(Base.class, "name");
+        assertEquals("base name", access.get(new Base())); // resolves the getter
+        assertEquals("other name", access.get(new Other()));
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("name", "map name");
+        assertEquals("map name", access.get(map));
+        // private field of a class other than the beanClass
+        assertEquals("other secret", new PropertyAccess(Base.class, "secret").get(new Other()));
+        assertEquals("map name", new PropertyAccess(Map.class, "name").get(map));
+        assertEquals(Object.class, new PropertyAccess(Map.class, "name").getJavaType());
+    }
+
+    public void testMissingProperty() throws Exception {
+        PropertyAccess access = new PropertyAccess(Base.class, "missing");
+        assertEquals(Object.class, access.getJavaType());
+        try {
+            access.get(new Base());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            access.get(new Other());
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public static Test suite() {
+        return new TestSuite(PropertyAccessTest.class);
+    }
+
+    public static class Base {
+        private String secret = "base secret";
+
+        public String getName() {
+            return "base name";
+        }
+
+        public int getCount() {
+            return 3;
+        }
+    }
+
+    public static class Sub extends Base {
+    }
+
+    public static class Other {
+        private String secret = "other secret";
+
+        public String getName() {
+            return "other name";
+        }
+    }
+}